@@ -0,0 +1,393 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+// Self-describing compressed archive with random access. The input is split
+// into blocks that are encoded independently by a CodecPipeline and written
+// back to back, followed by an index of the blocks and a fixed-size trailer:
+//   header   magic "BWTA", version (1 byte), number of stages (1 byte) and
+//            the id of every stage in encoding order (1 byte each)
+//   block*   encoded blocks
+//   index    for each block: file offset (8 bytes), encoded length (4 bytes),
+//            decoded length (4 bytes) and CRC32C of the encoded block
+//            (4 bytes)
+//   trailer  file offset of the index (8 bytes), number of blocks (4 bytes),
+//            CRC32C of the index (4 bytes) and magic "BWTA"
+// All integers are big-endian. Since the index is at the end, the archive
+// can be written in a single pass, and a reader can find any byte of the
+// original input by reading the trailer and the index, then decoding only
+// the blocks that cover it. The header tells the reader which pipeline to
+// decode with, and the checksums let every block be checked on its own, so
+// a truncated file is rejected and a corrupt block can be skipped.
+public class BlockArchive implements Closeable {
+	private static final int DEFAULT_BLOCK_SIZE = 900000;
+	private static final int MAGIC = 0x42575441; // "BWTA"
+	private static final int VERSION = 2;
+	private static final int ENTRY = 20;
+	private static final int TRAILER = 20;
+
+	// stage ids, in the order they appear in the header
+	private static final int BURROWS_WHEELER = 1;
+	private static final int MOVE_TO_FRONT = 2;
+	private static final int ZERO_RUN = 3;
+	private static final int HUFFMAN = 4;
+
+	private final FileChannel channel;
+	private final CodecPipeline pipeline;
+	private final long[] offset;   // offset[b] is the file offset of block b
+	private final int[] encoded;   // encoded[b] is the encoded length of block b
+	private final int[] checksum;  // checksum[b] is the CRC32C of encoded block b
+	private final long[] start;    // start[b] is the offset of block b in the original input
+	private final long length;     // length of the original input
+
+	// open the archive file, decoding with the stages named in its header
+	public BlockArchive(Path file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size < 6 + TRAILER) {
+				throw new IllegalArgumentException("Truncated archive");
+			}
+			ByteBuffer header = readAt(0, 6);
+			if (header.getInt() != MAGIC) {
+				throw new IllegalArgumentException("Not a block archive");
+			}
+			int version = header.get() & 0xff;
+			if (version != VERSION) {
+				throw new IllegalArgumentException("Unsupported archive version " + version);
+			}
+			int stages = header.get() & 0xff;
+			ByteBuffer ids = readAt(6, stages);
+			CodecStage[] chain = new CodecStage[stages];
+			for (int i = 0; i < stages; i++) {
+				chain[i] = stage(ids.get() & 0xff);
+			}
+			pipeline = new CodecPipeline(chain);
+
+			ByteBuffer trailer = readAt(size - TRAILER, TRAILER);
+			long indexOffset = trailer.getLong();
+			int blocks = trailer.getInt();
+			int indexChecksum = trailer.getInt();
+			if (trailer.getInt() != MAGIC) {
+				throw new IllegalArgumentException("Truncated archive");
+			}
+			if (blocks < 0 || indexOffset < 6 + stages || indexOffset + (long) blocks * ENTRY != size - TRAILER) {
+				throw new IllegalArgumentException("Malformed archive index");
+			}
+
+			offset = new long[blocks];
+			encoded = new int[blocks];
+			checksum = new int[blocks];
+			start = new long[blocks + 1];
+			ByteBuffer index = readAt(indexOffset, blocks * ENTRY);
+			if (crc(index.array(), blocks * ENTRY) != indexChecksum) {
+				throw new IllegalArgumentException("Checksum mismatch in archive index");
+			}
+			for (int b = 0; b < blocks; b++) {
+				offset[b] = index.getLong();
+				encoded[b] = index.getInt();
+				int decoded = index.getInt();
+				checksum[b] = index.getInt();
+				if (offset[b] < 6 + stages || encoded[b] < 0 || decoded < 0 || offset[b] + encoded[b] > indexOffset) {
+					throw new IllegalArgumentException("Malformed index entry for block " + b);
+				}
+				start[b + 1] = start[b] + decoded;
+			}
+			length = start[blocks];
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	// the stage with the given id in an archive header
+	private static CodecStage stage(int id) {
+		switch (id) {
+		case BURROWS_WHEELER:
+			return new BurrowsWheelerStage();
+		case MOVE_TO_FRONT:
+			return new MoveToFrontStage();
+		case ZERO_RUN:
+			return new ZeroRunStage();
+		case HUFFMAN:
+			return new HuffmanStage();
+		default:
+			throw new IllegalArgumentException("Unknown stage id " + id);
+		}
+	}
+
+	// the id of stage in an archive header
+	private static int id(CodecStage stage) {
+		if (stage instanceof BurrowsWheelerStage) {
+			return BURROWS_WHEELER;
+		} else if (stage instanceof MoveToFrontStage) {
+			return MOVE_TO_FRONT;
+		} else if (stage instanceof ZeroRunStage) {
+			return ZERO_RUN;
+		} else if (stage instanceof HuffmanStage) {
+			return HUFFMAN;
+		}
+		throw new IllegalArgumentException("Stage " + stage.getClass().getSimpleName() + " has no archive id");
+	}
+
+	private static int crc(byte[] b, int length) {
+		CRC32C crc = new CRC32C();
+		crc.update(b, 0, length);
+		return (int) crc.getValue();
+	}
+
+	// Compress in into out as an archive of blocks of at most blockSize bytes
+	// encoded by pipeline. Only one block is held in memory at a time.
+	public static void write(CodecPipeline pipeline, int blockSize, InputStream in, OutputStream out)
+			throws IOException {
+		if (pipeline == null || in == null || out == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Block size must be positive");
+		}
+
+		List<CodecStage> stages = pipeline.stages();
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		data.writeInt(MAGIC);
+		data.writeByte(VERSION);
+		data.writeByte(stages.size());
+		for (CodecStage stage : stages) {
+			data.writeByte(id(stage));
+		}
+
+		ByteArrayOutputStream entries = new ByteArrayOutputStream();
+		DataOutputStream index = new DataOutputStream(entries);
+		byte[] block = new byte[blockSize];
+		long position = 6 + stages.size();
+		int blocks = 0;
+		int length;
+		while ((length = readFully(in, block, blockSize)) > 0) {
+			byte[] encodedBlock = pipeline.encode(block, length);
+			index.writeLong(position);
+			index.writeInt(encodedBlock.length);
+			index.writeInt(length);
+			index.writeInt(crc(encodedBlock, encodedBlock.length));
+			data.write(encodedBlock);
+			position += encodedBlock.length;
+			blocks++;
+		}
+
+		entries.writeTo(data);
+		data.writeLong(position);
+		data.writeInt(blocks);
+		data.writeInt(crc(entries.toByteArray(), entries.size()));
+		data.writeInt(MAGIC);
+		data.flush();
+	}
+
+	// length of the original input
+	public long length() {
+		return length;
+	}
+
+	// number of blocks in the archive
+	public int blocks() {
+		return offset.length;
+	}
+
+	// the count bytes of the original input starting at position, decoding
+	// only the blocks that cover them
+	public byte[] read(long position, int count) throws IOException {
+		if (position < 0 || count < 0 || position + count > length) {
+			throw new IllegalArgumentException("Range out-of-bound");
+		}
+
+		byte[] result = new byte[count];
+		long end = position + count;
+		int b = block(position);
+		int n = 0;
+		while (n < count) {
+			byte[] decoded = decodeBlock(b);
+			int from = (int) (position + n - start[b]);
+			int to = (int) (Math.min(end, start[b + 1]) - start[b]);
+			System.arraycopy(decoded, from, result, n, to - from);
+			n += to - from;
+			b++;
+		}
+		return result;
+	}
+
+	// decode block b of the archive, after checking its checksum
+	public byte[] decodeBlock(int b) throws IOException {
+		byte[] block = readBlock(b);
+		if (crc(block, block.length) != checksum[b]) {
+			throw new IllegalArgumentException("Checksum mismatch in block " + b);
+		}
+		return decode(b, block);
+	}
+
+	// Decode block b, already read and checked into block
+	private byte[] decode(int b, byte[] block) {
+		byte[] decoded = pipeline.decode(block, block.length);
+		if (decoded.length != start[b + 1] - start[b]) {
+			throw new IllegalArgumentException("Block " + b + " decodes to " + decoded.length
+					+ " bytes instead of " + (start[b + 1] - start[b]));
+		}
+		return decoded;
+	}
+
+	// does encoded block b match its checksum. Blocks are read with
+	// positional reads, so several threads can check blocks at once.
+	public boolean verifyBlock(int b) throws IOException {
+		byte[] block = readBlock(b);
+		return crc(block, block.length) == checksum[b];
+	}
+
+	// the blocks that do not match their checksum, checked in parallel on the
+	// common fork/join pool
+	public List<Integer> corruptBlocks() throws IOException {
+		List<Future<Boolean>> checks = new ArrayList<>();
+		for (int b = 0; b < offset.length; b++) {
+			final int block = b;
+			checks.add(ForkJoinPool.commonPool().submit(new Callable<Boolean>() {
+				public Boolean call() throws IOException {
+					return verifyBlock(block);
+				}
+			}));
+		}
+
+		List<Integer> corrupt = new ArrayList<>();
+		for (int b = 0; b < checks.size(); b++) {
+			try {
+				if (!checks.get(b).get()) {
+					corrupt.add(b);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while checking blocks", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IllegalStateException("Failed to check block " + b, e.getCause());
+			}
+		}
+		return corrupt;
+	}
+
+	// Write the whole original input to out, leaving out the blocks that do
+	// not match their checksum. Each block is read and checked once. Returns
+	// the numbers of the skipped blocks.
+	public List<Integer> restore(OutputStream out) throws IOException {
+		List<Integer> skipped = new ArrayList<>();
+		for (int b = 0; b < offset.length; b++) {
+			byte[] block = readBlock(b);
+			if (crc(block, block.length) != checksum[b]) {
+				skipped.add(b);
+				continue;
+			}
+			out.write(decode(b, block));
+		}
+		out.flush();
+		return skipped;
+	}
+
+	private byte[] readBlock(int b) throws IOException {
+		if (b < 0 || b >= offset.length) {
+			throw new IllegalArgumentException("Block out-of-bound: " + b);
+		}
+		return readAt(offset[b], encoded[b]).array();
+	}
+
+	// the block that holds the byte of the original input at position
+	private int block(long position) {
+		int b = Arrays.binarySearch(start, 0, offset.length, position);
+		return b >= 0 ? b : -b - 2;
+	}
+
+	// Read length bytes of the file at position. Positional reads leave the
+	// channel position alone, so blocks can be read from several threads.
+	private ByteBuffer readAt(long position, int length) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(length);
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, position + buf.position()) < 0) {
+				throw new IllegalArgumentException("Truncated archive");
+			}
+		}
+		buf.flip();
+		return buf;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// Read up to length bytes into b, stopping early only at the end of in.
+	// Returns the number of bytes read.
+	private static int readFully(InputStream in, byte[] b, int length) throws IOException {
+		int n = 0;
+		int read;
+		while (n < length && (read = in.read(b, n, length - n)) >= 0) {
+			n += read;
+		}
+		return n;
+	}
+
+	// if args[0] is '-', write standard input to standard output as an
+	// archive, with blocks of args[1] bytes if given
+	// if args[0] is '+', restore the archive file args[1] to standard output,
+	// skipping corrupt blocks and listing them on standard error
+	// otherwise args[0] is an archive file; write args[2] bytes of the
+	// original input starting at args[1] to standard output
+	public static void main(String[] args) throws IOException {
+		String usage = "Usage: BlockArchive - [block size] | BlockArchive + file | BlockArchive file offset count";
+		if (args.length == 0 || args.length > 3) {
+			System.err.println(usage);
+			return;
+		}
+
+		if (args[0].equals("-")) {
+			int blockSize = args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_BLOCK_SIZE;
+			write(CodecPipeline.standard(), blockSize, System.in, System.out);
+			return;
+		}
+
+		if (args[0].equals("+")) {
+			if (args.length != 2) {
+				System.err.println(usage);
+				return;
+			}
+			try (BlockArchive archive = new BlockArchive(Paths.get(args[1]))) {
+				List<Integer> skipped = archive.restore(System.out);
+				if (!skipped.isEmpty()) {
+					System.err.println("Skipped corrupt blocks " + skipped);
+				}
+			}
+			return;
+		}
+
+		try (BlockArchive archive = new BlockArchive(Paths.get(args[0]))) {
+			long position = args.length >= 2 ? Long.parseLong(args[1]) : 0;
+			int count = args.length == 3 ? Integer.parseInt(args[2]) : (int) (archive.length() - position);
+			System.out.write(archive.read(position, count));
+			System.out.flush();
+		}
+	}
+}
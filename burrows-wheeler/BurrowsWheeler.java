@@ -1,90 +1,525 @@
-import edu.princeton.cs.algs4.BinaryStdIn;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
 import edu.princeton.cs.algs4.BinaryStdOut;
 
 public class BurrowsWheeler {
 	private static final int R = 256;
+	private static final int DEFAULT_BLOCK_SIZE = 900000; // same as bzip2 -9
+	static final int MAX_PACKED = 1 << 24; // longest block packed in an int per row
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// Apply Burrows-Wheeler transform to in. The result is the index of the
+	// original message as 4 bytes (big-endian) followed by the last column,
+	// the same format written by transform(). Uses no global state, so it is
+	// safe to call from any thread.
+	public static byte[] encode(byte[] in) {
+		if (in == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+
+		int length = in.length;
+		byte[] out = new byte[length + 4];
+		byte[] last = new byte[length];
+		int first = transform(in, length, last);
+		writeInt(out, 0, first);
+		System.arraycopy(last, 0, out, 4, length);
+		return out;
+	}
+
+	// Apply Burrows-Wheeler transform to the remaining bytes of in
+	public static ByteBuffer encode(ByteBuffer in) {
+		if (in == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+
+		byte[] s = new byte[in.remaining()];
+		in.get(s);
+		return ByteBuffer.wrap(encode(s));
+	}
+
+	// Apply Burrows-Wheeler inverse transform to the output of encode
+	public static byte[] decode(byte[] in) {
+		if (in == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+		if (in.length < 4) {
+			throw new IllegalArgumentException("Missing index of the original message");
+		}
+
+		int first = readInt(in, 0);
+		int length = in.length - 4;
+		return inverse(first, Arrays.copyOfRange(in, 4, in.length), length);
+	}
+
+	// Apply Burrows-Wheeler inverse transform to the remaining bytes of in
+	public static ByteBuffer decode(ByteBuffer in) {
+		if (in == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+
+		byte[] t = new byte[in.remaining()];
+		in.get(t);
+		return ByteBuffer.wrap(decode(t));
+	}
 
 	// apply Burrows-Wheeler transform, reading from standard input and writing to
-	// standard output
+	// standard output. Standard input and output are read and written in bulk
+	// as bytes, rather than one char at a time through BinaryStdIn and
+	// BinaryStdOut.
 	public static void transform() {
-		// Read from binary input
-		String s = BinaryStdIn.readString();
-		int length = s.length();
-		CircularSuffixArray suffixArr = new CircularSuffixArray(s);
-
-		// Find the index of the suffix that equals to the original message in
-		// the list of sorted suffixes.
-		int first = 0;
-		for (int i = 0; i < length; i++) {
-			if (suffixArr.index(i) == 0) {
-				first = i;
-				break;
+		transform((CodecMetrics) null);
+	}
+
+	// Whole-input transform, recorded in metrics unless it is null
+	private static void transform(CodecMetrics metrics) {
+		try {
+			byte[] in = readBytes();
+			long start = System.nanoTime();
+			byte[] last = new byte[in.length];
+			int first = transform(in, in.length, last, metrics);
+			record(metrics, "BurrowsWheeler.transform", start, in.length, in.length + 4);
+
+			DataOutputStream out = new DataOutputStream(System.out);
+			out.writeInt(first);
+			out.write(last);
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// apply Burrows-Wheeler transform to consecutive blocks of at most blockSize
+	// characters, so that memory use is bounded by the block size rather than
+	// the input size. Each block is written as its length, followed by the
+	// index of the original message and the last column of the block.
+	public static void transform(int blockSize) {
+		transform(blockSize, null);
+	}
+
+	// Block transform, recorded in metrics unless it is null
+	private static void transform(int blockSize, CodecMetrics metrics) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Block size must be positive");
+		}
+
+		byte[] block = new byte[blockSize];
+		byte[] last = new byte[blockSize];
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out, BUFFER_SIZE));
+		try {
+			int length;
+			while ((length = readFully(System.in, block, blockSize)) > 0) {
+				long start = System.nanoTime();
+				int first = transform(block, length, last, metrics);
+				record(metrics, "BurrowsWheeler.transform", start, length, length + 8);
+				out.writeInt(length);
+				out.writeInt(first);
+				out.write(last, 0, length);
 			}
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
-		BinaryStdOut.write(first);
+	}
 
-		// Write the list of characters at the end of each circular suffix
-		for (int i = 0; i < length; i++) {
-			// Write to binary output
-			BinaryStdOut.write(s.charAt((suffixArr.index(i) - 1 + length) % length));
+	// Apply Burrows-Wheeler transform to the first length bytes of s, storing
+	// the last column in last and returning the index of the original message.
+	// Uses no global state, so blocks can be transformed concurrently.
+	static int transform(byte[] s, int length, byte[] last) {
+		return transform(s, length, last, null);
+	}
+
+	// Transform as above, adding the comparisons made by the suffix sort to
+	// metrics unless it is null
+	static int transform(byte[] s, int length, byte[] last, CodecMetrics metrics) {
+		// The sort and the pass that writes the last column and finds the
+		// original message work directly on the arrays of sorted offsets
+		int[] sa = new int[length];
+		long comparisons = CircularSuffixArray.sort(s, length, sa, new int[length], new int[length],
+				new int[Math.max(R, length / 2) + 1]);
+		if (metrics != null) {
+			metrics.recordSortComparisons(comparisons);
 		}
-		BinaryStdOut.flush();
+		return CircularSuffixArray.lastColumn(s, length, sa, last);
 	}
 
 	// apply Burrows-Wheeler inverse transform, reading from standard input and
 	// writing to standard output
 	public static void inverseTransform() {
-		// Read from binary input
-		int first = BinaryStdIn.readInt();
-		String t = BinaryStdIn.readString();
-		int length = t.length();
+		inverseTransform((CodecMetrics) null);
+	}
 
-		// The first column of characters
-		char[] f = new char[length];
+	// Whole-input inverse transform, recorded in metrics unless it is null
+	private static void inverseTransform(CodecMetrics metrics) {
+		try {
+			byte[] in = readBytes();
+			long start = System.nanoTime();
+			byte[] out = decode(in);
+			record(metrics, "BurrowsWheeler.inverseTransform", start, in.length, out.length);
+			System.out.write(out);
+			System.out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
 
-		// The array storing the next indices
-		int[] next = new int[length];
+	// apply Burrows-Wheeler inverse transform to a stream of blocks written by
+	// transform(blockSize). Blocks are decoded and written one at a time, and a
+	// block longer than blockSize is rejected so memory use stays bounded.
+	public static void inverseTransform(int blockSize) {
+		inverseTransform(blockSize, null);
+	}
 
-		// Use key-indexed counting to sort the first column and
-		// also construct the next array at the same time
-		int[] count = new int[R + 1];
+	// Block inverse transform, recorded in metrics unless it is null
+	private static void inverseTransform(int blockSize, CodecMetrics metrics) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Block size must be positive");
+		}
+
+		byte[] header = new byte[8];
+		byte[] last = new byte[blockSize];
+		InputStream in = new BufferedInputStream(System.in, BUFFER_SIZE);
+		BufferedOutputStream out = new BufferedOutputStream(System.out, BUFFER_SIZE);
+		try {
+			int n;
+			while ((n = readFully(in, header, 8)) > 0) {
+				if (n < 8) {
+					throw new IllegalArgumentException("Truncated block header");
+				}
+				int length = readInt(header, 0);
+				if (length < 0 || length > blockSize) {
+					throw new IllegalArgumentException("Block of " + length + " characters exceeds block size " + blockSize);
+				}
+				int first = readInt(header, 4);
+				if (readFully(in, last, length) < length) {
+					throw new IllegalArgumentException("Truncated block of " + length + " characters");
+				}
+				long start = System.nanoTime();
+				byte[] decoded = inverse(first, last, length);
+				record(metrics, "BurrowsWheeler.inverseTransform", start, length + 8, length);
+				out.write(decoded);
+			}
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// Reconstruct the original message from the index of the original message
+	// and the first length bytes of the last column t. Each row of the sorted
+	// suffixes is packed with its first-column character in the low 8 bits and
+	// its next index in the high bits, so every output byte costs a single
+	// random access instead of one into f[] and one into next[]. Longer blocks
+	// use the split layout of SplitRows, which also costs a single random
+	// access per byte.
+	static byte[] inverse(int first, byte[] t, int length) {
+		if (length > 0 && (first < 0 || first >= length)) {
+			throw new IllegalArgumentException("Index of the original message out of range: " + first);
+		}
+
+		byte[] orig = new byte[length];
+		if (length <= MAX_PACKED) {
+			inverse(first, t, length, orig, new int[length], new int[R + 1]);
+		} else {
+			SplitRows rows = new SplitRows(t, length);
+			for (int i = 0; i < length; i++) {
+				orig[i] = (byte) rows.character(first);
+				first = rows.next[first];
+			}
+		}
+		return orig;
+	}
+
+	// Reconstruct the original message of a block of at most MAX_PACKED bytes
+	// into orig, with packed (of at least length entries) and count (of R + 1)
+	// as scratch space, so that repeated calls need not allocate
+	static void inverse(int first, byte[] t, int length, byte[] orig, int[] packed, int[] count) {
+		if (length > 0 && (first < 0 || first >= length)) {
+			throw new IllegalArgumentException("Index of the original message out of range: " + first);
+		}
+
+		pack(t, length, packed, count);
 		for (int i = 0; i < length; i++) {
-			count[t.charAt(i) + 1]++;
+			int row = packed[first];
+			orig[i] = (byte) row;
+			first = row >>> 8;
 		}
-		for (int r = 0; r < R; r++) {
-			count[r + 1] += count[r];
+	}
+
+	// Reconstruct several independent blocks at once. The blocks are decoded
+	// in lockstep, one byte of each per step, so the cache misses of the
+	// different chains overlap instead of being paid one after another.
+	static byte[][] inverse(int[] first, byte[][] t, int[] length) {
+		int k = first.length;
+		byte[][] orig = new byte[k][];
+		int[][] packed = new int[k][];
+		SplitRows[] split = new SplitRows[k];
+		int[] row = new int[k];
+		int steps = 0;
+		for (int j = 0; j < k; j++) {
+			if (length[j] > 0 && (first[j] < 0 || first[j] >= length[j])) {
+				throw new IllegalArgumentException("Index of the original message out of range: " + first[j]);
+			}
+			orig[j] = new byte[length[j]];
+			if (length[j] <= MAX_PACKED) {
+				packed[j] = pack(t[j], length[j]);
+			} else {
+				split[j] = new SplitRows(t[j], length[j]);
+			}
+			row[j] = first[j];
+			steps = Math.max(steps, length[j]);
+		}
+
+		for (int i = 0; i < steps; i++) {
+			for (int j = 0; j < k; j++) {
+				if (i >= length[j]) {
+					continue;
+				}
+				if (packed[j] != null) {
+					int p = packed[j][row[j]];
+					orig[j][i] = (byte) p;
+					row[j] = p >>> 8;
+				} else {
+					orig[j][i] = (byte) split[j].character(row[j]);
+					row[j] = split[j].next[row[j]];
+				}
+			}
 		}
+		return orig;
+	}
+
+	// Use key-indexed counting to sort the first column and also construct
+	// the next array at the same time, packing both into one int per row
+	private static int[] pack(byte[] t, int length) {
+		int[] packed = new int[length];
+		pack(t, length, packed, new int[R + 1]);
+		return packed;
+	}
+
+	// Pack the rows into packed, with count (of length R + 1) as scratch space
+	static void pack(byte[] t, int length, int[] packed, int[] count) {
+		countFirstColumn(t, length, count);
 		for (int i = 0; i < length; i++) {
-			char c = t.charAt(i);
-			f[count[c]] = t.charAt(i);
-			next[count[c]] = i;
-			count[c]++;
+			int c = t[i] & 0xff;
+			packed[count[c]++] = (i << 8) | c;
 		}
+	}
+
+	// The rows of a block too long to pack in an int per row, split into the
+	// next array and the first column. The first column is sorted, so it is
+	// kept as the row where each character ends, found from a small table of
+	// the character at every 2^shift-th row. Both stay in cache, so only the
+	// next array costs a random access, for 4 bytes per row.
+	private static class SplitRows {
+		private static final int HEAD_BITS = 16; // at most 2^16 entries in head
 
-		// Reconstruct the original message
-		char[] orig = new char[length];
+		private final int[] next;
+		private final int[] end = new int[R];
+		private final byte[] head;
+		private final int shift;
+
+		SplitRows(byte[] t, int length) {
+			int[] count = new int[R + 1];
+			countFirstColumn(t, length, count);
+			next = new int[length];
+			for (int i = 0; i < length; i++) {
+				next[count[t[i] & 0xff]++] = i;
+			}
+			// Each count now holds the row after the last of its character
+			System.arraycopy(count, 0, end, 0, R);
+
+			shift = Math.max(0, 32 - Integer.numberOfLeadingZeros(length - 1) - HEAD_BITS);
+			head = new byte[((length - 1) >>> shift) + 1];
+			int c = 0;
+			for (int h = 0; h < head.length; h++) {
+				while (end[c] <= h << shift) {
+					c++;
+				}
+				head[h] = (byte) c;
+			}
+		}
+
+		// The first-column character of row
+		int character(int row) {
+			int c = head[row >>> shift] & 0xff;
+			while (end[c] <= row) {
+				c++;
+			}
+			return c;
+		}
+	}
+
+	// Fill count with the row where each character first appears in the
+	// first column
+	private static void countFirstColumn(byte[] t, int length, int[] count) {
+		Arrays.fill(count, 0, R + 1, 0);
 		for (int i = 0; i < length; i++) {
-			orig[i] = f[first];
-			first = next[first];
+			count[(t[i] & 0xff) + 1]++;
+		}
+		for (int r = 0; r < R; r++) {
+			count[r + 1] += count[r];
+		}
+	}
+
+	// apply Burrows-Wheeler inverse transform to a file written by transform(),
+	// streaming the decoded bytes to out. The file is memory-mapped rather
+	// than read onto the heap, and the next array lives in a direct buffer,
+	// so peak heap use does not grow with the file size. The first column is
+	// not stored at all: the character of row i in the first column is
+	// t[next[i]].
+	public static void inverseTransform(Path in, WritableByteChannel out) throws IOException {
+		if (in == null || out == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+
+		try (FileChannel channel = FileChannel.open(in, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < 4) {
+				throw new IllegalArgumentException("Missing index of the original message");
+			}
+			if (size - 4 > Integer.MAX_VALUE / 4) {
+				throw new IllegalArgumentException("Input of " + size + " bytes is too large to map");
+			}
+
+			MappedByteBuffer t = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			int first = t.getInt(0);
+			int length = (int) (size - 4);
+			if (length > 0 && (first < 0 || first >= length)) {
+				throw new IllegalArgumentException("Index of the original message out of range: " + first);
+			}
+
+			// Key-indexed counting over the mapped last column
+			int[] count = new int[R + 1];
+			for (int i = 0; i < length; i++) {
+				count[(t.get(4 + i) & 0xff) + 1]++;
+			}
+			for (int r = 0; r < R; r++) {
+				count[r + 1] += count[r];
+			}
+			IntBuffer next = ByteBuffer.allocateDirect(4 * length).asIntBuffer();
+			for (int i = 0; i < length; i++) {
+				next.put(count[t.get(4 + i) & 0xff]++, i);
+			}
+
+			// Reconstruct the original message one output buffer at a time
+			ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16);
+			for (int i = 0; i < length; i++) {
+				first = next.get(first);
+				buf.put(t.get(4 + first));
+				if (!buf.hasRemaining()) {
+					writeFully(buf, out);
+				}
+			}
+			writeFully(buf, out);
 		}
+	}
 
-		// Write to binary output
-		BinaryStdOut.write(new String(orig));
-		BinaryStdOut.flush();
+	private static void writeFully(ByteBuffer buf, WritableByteChannel out) throws IOException {
+		buf.flip();
+		while (buf.hasRemaining()) {
+			out.write(buf);
+		}
+		buf.clear();
+	}
+
+	// Record a call of stage that started at start and a block of the same
+	// size, unless metrics is null
+	private static void record(CodecMetrics metrics, String stage, long start, long bytesIn, long bytesOut) {
+		if (metrics != null) {
+			metrics.recordStage(stage, System.nanoTime() - start, bytesIn, bytesOut);
+			metrics.recordBlock(bytesIn, bytesOut);
+		}
+	}
+
+	// Read the rest of standard input
+	private static byte[] readBytes() throws IOException {
+		byte[] buf = new byte[BUFFER_SIZE];
+		int n = 0;
+		int read;
+		while ((read = System.in.read(buf, n, buf.length - n)) >= 0) {
+			n += read;
+			if (n == buf.length) {
+				buf = Arrays.copyOf(buf, 2 * n);
+			}
+		}
+		return Arrays.copyOf(buf, n);
+	}
+
+	// Read up to length bytes into b, stopping early only at the end of in.
+	// Returns the number of bytes read.
+	static int readFully(InputStream in, byte[] b, int length) throws IOException {
+		int n = 0;
+		int read;
+		while (n < length && (read = in.read(b, n, length - n)) >= 0) {
+			n += read;
+		}
+		return n;
+	}
+
+	static void writeInt(byte[] b, int offset, int x) {
+		b[offset] = (byte) (x >>> 24);
+		b[offset + 1] = (byte) (x >>> 16);
+		b[offset + 2] = (byte) (x >>> 8);
+		b[offset + 3] = (byte) x;
+	}
+
+	static int readInt(byte[] b, int offset) {
+		return ((b[offset] & 0xff) << 24) | ((b[offset + 1] & 0xff) << 16)
+				| ((b[offset + 2] & 0xff) << 8) | (b[offset + 3] & 0xff);
 	}
 
 	// if args[0] is '-', apply Burrows-Wheeler transform
 	// if args[0] is '+', apply Burrows-Wheeler inverse transform
-	public static void main(String[] args) {
-		if (args.length != 1) {
+	// if args[1] is given, process the input in blocks of that many characters
+	// (or DEFAULT_BLOCK_SIZE if args[1] is 'b'); both sides must agree on it
+	// if args[0] is '+' and args[1] is a file name, memory-map that file and
+	// write its inverse transform to standard output
+	// if the system property codec.metrics is true, write metrics as a JSON
+	// line to standard error when done
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1 && args.length != 2) {
 			BinaryStdOut.write("Wrong argument! Must indicate encode (-) or decode (+)!");
 			return;
 		}
 
-		if (args[0].equals("-")) {
-			transform();
+		if (args.length == 2 && args[0].equals("+") && !args[1].equals("b") && !args[1].matches("\\d+")) {
+			WritableByteChannel out = Channels.newChannel(System.out);
+			inverseTransform(Paths.get(args[1]), out);
+			System.out.flush();
+			return;
+		}
+
+		CodecMetrics metrics = CodecMetrics.fromSystemProperty();
+		if (args.length == 2) {
+			int blockSize = args[1].equals("b") ? DEFAULT_BLOCK_SIZE : Integer.parseInt(args[1]);
+			if (args[0].equals("-")) {
+				transform(blockSize, metrics);
+			} else if (args[0].equals("+")) {
+				inverseTransform(blockSize, metrics);
+			}
+		} else if (args[0].equals("-")) {
+			transform(metrics);
 		} else if (args[0].equals("+")) {
-			inverseTransform();
+			inverseTransform(metrics);
+		}
+
+		if (metrics != null) {
+			metrics.report();
 		}
 	}
 }
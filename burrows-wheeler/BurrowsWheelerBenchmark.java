@@ -0,0 +1,102 @@
+/******************************************************************************
+ *  Compilation:  javac BurrowsWheelerBenchmark.java
+ *  Execution:    java BurrowsWheelerBenchmark [size in bytes] [rounds]
+ *  Dependencies: CircularSuffixArray.java BurrowsWheeler.java
+ *                MoveToFront.java MoveToFrontBenchmark.java
+ *
+ *  Time circular suffix array construction, the Burrows-Wheeler transform
+ *  and its inverse, and move-to-front encoding and decoding on generated
+ *  text, random bytes and a periodic input. Each result is the best of the
+ *  given number of rounds, after a warm-up round.
+ *
+ ******************************************************************************/
+
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import edu.princeton.cs.algs4.Stopwatch;
+
+public class BurrowsWheelerBenchmark {
+
+	// Repeat a short pattern with an occasional change, like a log file
+	static byte[] periodic(int size) {
+		byte[] s = new byte[size];
+		byte[] pattern = "2024-01-01 INFO request served\n".getBytes();
+		for (int i = 0; i < size; i++) {
+			s[i] = pattern[i % pattern.length];
+		}
+		for (int i = 0; i < size / 4096; i++) {
+			s[StdRandom.uniform(size)] = (byte) ('0' + StdRandom.uniform(10));
+		}
+		return s;
+	}
+
+	private static void report(String input, String operation, int bytes, double seconds) {
+		StdOut.printf("%-10s %-22s %9.3f s %9.1f MB/s\n", input, operation, seconds,
+				bytes / 1e6 / Math.max(seconds, 1e-3));
+	}
+
+	private static void run(String name, byte[] in, int rounds) {
+		int n = in.length;
+		double csa = Double.MAX_VALUE;
+		double bwt = Double.MAX_VALUE;
+		double inverse = Double.MAX_VALUE;
+		double mtf = Double.MAX_VALUE;
+		double mtfInverse = Double.MAX_VALUE;
+		byte[] encoded = null;
+		byte[] decoded = null;
+		byte[] positions = new byte[n];
+		byte[] back = new byte[n];
+
+		for (int r = 0; r <= rounds; r++) {
+			Stopwatch sw = new Stopwatch();
+			new CircularSuffixArray(in, n);
+			double t1 = sw.elapsedTime();
+
+			sw = new Stopwatch();
+			encoded = BurrowsWheeler.encode(in);
+			double t2 = sw.elapsedTime();
+
+			sw = new Stopwatch();
+			decoded = BurrowsWheeler.decode(encoded);
+			double t3 = sw.elapsedTime();
+
+			sw = new Stopwatch();
+			MoveToFront.encode(in, n, positions);
+			double t4 = sw.elapsedTime();
+
+			sw = new Stopwatch();
+			MoveToFront.decode(positions, n, back);
+			double t5 = sw.elapsedTime();
+
+			// The first round only warms up the JIT
+			if (r > 0) {
+				csa = Math.min(csa, t1);
+				bwt = Math.min(bwt, t2);
+				inverse = Math.min(inverse, t3);
+				mtf = Math.min(mtf, t4);
+				mtfInverse = Math.min(mtfInverse, t5);
+			}
+		}
+
+		if (!Arrays.equals(in, decoded) || !Arrays.equals(in, back)) {
+			throw new IllegalStateException("Round trip failed on " + name);
+		}
+
+		report(name, "CircularSuffixArray", n, csa);
+		report(name, "transform", n, bwt);
+		report(name, "inverseTransform", n, inverse);
+		report(name, "MoveToFront.encode", n, mtf);
+		report(name, "MoveToFront.decode", n, mtfInverse);
+	}
+
+	public static void main(String[] args) {
+		int size = args.length >= 1 ? Integer.parseInt(args[0]) : 1 << 22;
+		int rounds = args.length >= 2 ? Integer.parseInt(args[1]) : 3;
+
+		run("text", MoveToFrontBenchmark.text(size), rounds);
+		run("random", MoveToFrontBenchmark.random(size), rounds);
+		run("periodic", periodic(size), rounds);
+	}
+}
@@ -0,0 +1,34 @@
+// Burrows-Wheeler transform stage. The output is the index of the original
+// message as 4 bytes (big-endian), followed by the last column.
+public class BurrowsWheelerStage implements CodecStage {
+	private final CodecMetrics metrics; // receives suffix sort comparisons, or null
+
+	public BurrowsWheelerStage() {
+		this(null);
+	}
+
+	// stage that adds the comparisons made by its suffix sorts to metrics
+	public BurrowsWheelerStage(CodecMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public byte[] encode(byte[] in, int length) {
+		byte[] out = new byte[length + 4];
+		byte[] last = new byte[length];
+		int first = BurrowsWheeler.transform(in, length, last, metrics);
+		BurrowsWheeler.writeInt(out, 0, first);
+		System.arraycopy(last, 0, out, 4, length);
+		return out;
+	}
+
+	public byte[] decode(byte[] in, int length) {
+		if (length < 4) {
+			throw new IllegalArgumentException("Truncated Burrows-Wheeler block");
+		}
+		int first = BurrowsWheeler.readInt(in, 0);
+		int n = length - 4;
+		byte[] last = new byte[n];
+		System.arraycopy(in, 4, last, 0, n);
+		return BurrowsWheeler.inverse(first, last, n);
+	}
+}
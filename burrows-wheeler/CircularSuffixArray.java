@@ -1,72 +1,558 @@
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import edu.princeton.cs.algs4.StdOut;
 
 public class CircularSuffixArray {
-	private final String s;
-	private final CircularSuffix[] suffixes;
+	// How the circular suffixes are sorted
+	public enum Strategy {
+		// Induced sorting (SA-IS) of the least rotation: O(n) on any input
+		INDUCED_SORTING,
+		// Radix sort on the first two bytes, then three-way radix quicksort
+		// of the buckets in parallel on the common fork/join pool. Falls back
+		// to induced sorting on texts with long repeats.
+		PARALLEL_RADIX
+	}
+
+	private final int length;
+	private final int[] index; // index[i] is the offset of the ith sorted suffix
+	private final int[] lcp;   // lcp[i] is the longest common prefix of suffixes i - 1 and i, or null
+	private long comparisons;  // comparisons made while sorting
 
 	public CircularSuffixArray(String s) {
 		// circular suffix array of s
+		this(s, false);
+	}
+
+	// circular suffix array of s, also computing the longest common prefix
+	// of adjacent sorted suffixes if withLcp is true
+	public CircularSuffixArray(String s, boolean withLcp) {
 		if (s == null) {
 			throw new IllegalArgumentException("Null argument");
 		}
-		
-		this.s = s;
-		suffixes = new CircularSuffix[s.length()];
-		for (int i = 0; i < s.length(); i++) {
-			suffixes[i] = new CircularSuffix(s, i);
-		}
-		Arrays.sort(suffixes);
-	}
-	
-	// Based on the implementation of SuffixArray in the course's book site.
-	private static class CircularSuffix implements Comparable<CircularSuffix> {
-		private final String text;
-		private final int index;
-		private final int length;
-		
-		CircularSuffix(String text, int index) {
-			this.text = text;
-			this.index = index;
-			this.length = text.length();
-		}
-		
-		// This makes the difference between this and SuffixArray.
-		public char charAt(int i) {
-			return text.charAt((index + i) % length);
-		}
-		
-		public int compareTo(CircularSuffix that) {
-			if (this == that) return 0;
+
+		length = s.length();
+		int[] text = new int[length];
+		int alphabet = 1;
+		for (int i = 0; i < length; i++) {
+			text[i] = s.charAt(i);
+			if (text[i] >= alphabet) {
+				alphabet = text[i] + 1;
+			}
+		}
+		index = sort(withLcp ? text.clone() : text, alphabet);
+		lcp = withLcp ? lcpArray(text, index) : null;
+	}
+
+	// circular suffix array of the first length bytes of text, each byte taken
+	// as an unsigned value
+	public CircularSuffixArray(byte[] text, int length) {
+		this(text, length, false);
+	}
+
+	// circular suffix array of the first length bytes of text, also computing
+	// the longest common prefix of adjacent sorted suffixes if withLcp is true
+	public CircularSuffixArray(byte[] text, int length, boolean withLcp) {
+		this(text, length, withLcp, Strategy.INDUCED_SORTING);
+	}
+
+	// circular suffix array of the first length bytes of text, sorted with the
+	// given strategy
+	public CircularSuffixArray(byte[] text, int length, Strategy strategy) {
+		this(text, length, false, strategy);
+	}
+
+	// circular suffix array of the first length bytes of text, sorted with the
+	// given strategy, also computing the longest common prefix of adjacent
+	// sorted suffixes if withLcp is true
+	public CircularSuffixArray(byte[] text, int length, boolean withLcp, Strategy strategy) {
+		if (text == null || strategy == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+		if (length < 0 || length > text.length) {
+			throw new IllegalArgumentException("Length out-of-bound");
+		}
+
+		this.length = length;
+		int[] sorted = null;
+		if (strategy == Strategy.PARALLEL_RADIX) {
+			ParallelSuffixSort sorter = new ParallelSuffixSort(text, length);
+			sorted = sorter.sort(ForkJoinPool.commonPool());
+			comparisons = sorter.comparisons();
+		}
+
+		// Induced sorting and the LCP array work on the characters as ints
+		int[] chars = null;
+		if (sorted == null || withLcp) {
+			chars = new int[length];
 			for (int i = 0; i < length; i++) {
-				if (this.charAt(i) < that.charAt(i)) return -1;
-				if (this.charAt(i) > that.charAt(i)) return +1;
+				chars[i] = text[i] & 0xff;
+			}
+		}
+		index = sorted != null ? sorted : sort(withLcp ? chars.clone() : chars, 256);
+		lcp = withLcp ? lcpArray(chars, index) : null;
+	}
+
+	// Sort the circular suffixes of text by induced sorting, as below.
+	// On entry rank holds the characters of the text; the array is reused as
+	// working space and overwritten. Besides it the sort needs sa and tmp of
+	// length n and count of max(alphabet, n / 2) + 1, so four int arrays in
+	// all, and no object per suffix.
+	private int[] sort(int[] rank, int alphabet) {
+		int n = rank.length;
+		int[] sa = new int[n];
+		comparisons += sort(rank, n, alphabet, sa, new int[n], new int[Math.max(alphabet, n / 2) + 1]);
+		return sa;
+	}
+
+	// Apply the Burrows-Wheeler transform to the first length bytes of text:
+	// sort its circular suffixes, write the last column into last and return
+	// the row of the original message, without building a suffix array
+	// object.
+	public static int lastColumn(byte[] text, int length, byte[] last) {
+		if (text == null || last == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+		if (length < 0 || length > text.length || length > last.length) {
+			throw new IllegalArgumentException("Length out-of-bound");
+		}
+
+		int[] sa = new int[length];
+		sort(text, length, sa, new int[length], new int[length], new int[Math.max(256, length / 2) + 1]);
+		return lastColumn(text, length, sa, last);
+	}
+
+	// Sort the circular suffixes of the first length bytes of text into sa,
+	// with rank, tmp and count as scratch space as below. Returns the number
+	// of comparisons made.
+	static long sort(byte[] text, int length, int[] sa, int[] rank, int[] tmp, int[] count) {
+		for (int i = 0; i < length; i++) {
+			rank[i] = text[i] & 0xff;
+		}
+		return sort(rank, length, 256, sa, tmp, count);
+	}
+
+	// Write the last column of the sorted suffixes sa of the first length
+	// bytes of text into last, and return the row of the original message,
+	// found in the same pass. The character before offset 0 wraps around to
+	// the end of the text, which is the only row that needs a test.
+	static int lastColumn(byte[] text, int length, int[] sa, byte[] last) {
+		int first = 0;
+		for (int i = 0; i < length; i++) {
+			int j = sa[i];
+			if (j == 0) {
+				first = i;
+				j = length;
 			}
+			last[i] = text[j - 1];
+		}
+		return first;
+	}
+
+	// Sort the circular suffixes of the text of length n whose characters are
+	// in rank[0, n) into sa, with tmp and count as scratch space. The arrays
+	// may be longer than needed: rank, sa and tmp must hold n entries, and
+	// count max(alphabet, n / 2) + 1, as the reduced texts of induced sorting
+	// have at most n / 2 characters and as many names. Returns the number of
+	// comparisons made.
+	// The text is rotated to its least rotation, which is a power u^k of a
+	// Lyndon word u. The rotations of a Lyndon word sort like its suffixes, so
+	// sorting the suffixes of u by induced sorting (SA-IS) gives the order of
+	// the rotations of u, and each rotation of u stands for k equal rotations
+	// of the text. Every step is linear in n, however repetitive the text.
+	static long sort(int[] rank, int n, int alphabet, int[] sa, int[] tmp, int[] count) {
+		if (n == 0) {
 			return 0;
 		}
+
+		int r = leastRotation(rank, n);
+		reverse(rank, 0, r);
+		reverse(rank, r, n);
+		reverse(rank, 0, n);
+		int p = lyndonPrefix(rank, n);
+		long comparisons = sais(rank, 0, p, alphabet, sa, 0, tmp, count);
+
+		// Rotation g of u in sorted order is followed by its k - 1 copies;
+		// the runs are filled from the last, so sa[g] is read before the run
+		// of g overwrites it
+		int k = n / p;
+		for (int g = p - 1; g >= 0; g--) {
+			int offset = sa[g] < n - r ? sa[g] + r : sa[g] + r - n;
+			for (int j = 0; j < k; j++) {
+				sa[g * k + j] = offset;
+				offset = offset < n - p ? offset + p : offset + p - n;
+			}
+		}
+		return comparisons;
+	}
+
+	// Offset of the least rotation of the circular text rank[0, n), in linear
+	// time and constant space: the candidates i and j advance past every
+	// offset that a mismatch rules out
+	private static int leastRotation(int[] text, int n) {
+		int i = 0;
+		int j = 1;
+		int k = 0;
+		while (i < n && j < n && k < n) {
+			int a = text[i + k < n ? i + k : i + k - n];
+			int b = text[j + k < n ? j + k : j + k - n];
+			if (a == b) {
+				k++;
+				continue;
+			}
+			if (a > b) {
+				i += k + 1;
+			} else {
+				j += k + 1;
+			}
+			if (i == j) {
+				j++;
+			}
+			k = 0;
+		}
+		return Math.min(i, j);
+	}
+
+	// Length of the first factor of the Lyndon factorization of text[0, n)
+	// (Duval). For a least rotation u^k it is the length of u.
+	private static int lyndonPrefix(int[] text, int n) {
+		int k = 0;
+		int j = 1;
+		while (j < n && text[k] <= text[j]) {
+			k = text[k] < text[j] ? 0 : k + 1;
+			j++;
+		}
+		return j - k;
+	}
+
+	private static void reverse(int[] a, int from, int to) {
+		for (int i = from, j = to - 1; i < j; i++, j--) {
+			int swap = a[i];
+			a[i] = a[j];
+			a[j] = swap;
+		}
+	}
+
+	// Suffix array of s[so, so + n), each suffix ending with a sentinel that
+	// is smaller than every character, by induced sorting (Nong, Zhang and
+	// Chan). The characters are in [0, alphabet). The result goes to
+	// sa[ao, ao + n); t holds the suffix types and bkt the buckets, and both
+	// must hold n and alphabet + 1 entries. The reduced problem is solved in
+	// place in sa, and may reuse t and bkt, so nothing is allocated. Returns
+	// the number of characters compared while naming the LMS substrings.
+	private static long sais(int[] s, int so, int n, int alphabet, int[] sa, int ao, int[] t, int[] bkt) {
+		// t[i] is 1 if suffix i is smaller than suffix i + 1 (type S), 0 if
+		// larger (type L); the suffix before the sentinel is type L
+		types(s, so, n, t);
+
+		// Sort the LMS substrings: drop the LMS suffixes at the ends of their
+		// buckets, then induce the order of the others
+		Arrays.fill(sa, ao, ao + n, -1);
+		buckets(s, so, n, alphabet, bkt, true);
+		for (int i = 1; i < n; i++) {
+			if (isLms(t, i)) {
+				sa[ao + --bkt[s[so + i]]] = i;
+			}
+		}
+		induce(s, so, n, alphabet, sa, ao, t, bkt);
+
+		// Move the sorted LMS substrings to the front and name them, two
+		// LMS positions being at least two apart, so the name of LMS
+		// position i can be kept at n1 + i / 2
+		int n1 = 0;
+		for (int i = 0; i < n; i++) {
+			if (isLms(t, sa[ao + i])) {
+				sa[ao + n1++] = sa[ao + i];
+			}
+		}
+		Arrays.fill(sa, ao + n1, ao + n, -1);
+		long comparisons = 0;
+		int names = 0;
+		int prev = -1;
+		for (int i = 0; i < n1; i++) {
+			int pos = sa[ao + i];
+			boolean diff = prev < 0;
+			for (int d = 0; !diff; d++) {
+				comparisons++;
+				if (pos + d == n || prev + d == n
+						|| s[so + pos + d] != s[so + prev + d] || t[pos + d] != t[prev + d]) {
+					diff = true;
+				} else if (d > 0 && (isLms(t, pos + d) || isLms(t, prev + d))) {
+					break;
+				}
+			}
+			if (diff) {
+				names++;
+				prev = pos;
+			}
+			sa[ao + n1 + pos / 2] = names - 1;
+		}
+
+		// The names in text order form the reduced text, at the end of sa
+		for (int i = n - 1, j = n - 1; i >= n1; i--) {
+			if (sa[ao + i] >= 0) {
+				sa[ao + j--] = sa[ao + i];
+			}
+		}
+
+		// Sort the reduced text, whose suffix order is the order of the LMS
+		// suffixes, into sa[ao, ao + n1)
+		int reduced = ao + n - n1;
+		if (names < n1) {
+			comparisons += sais(sa, reduced, n1, names, sa, ao, t, bkt);
+			types(s, so, n, t);
+		} else {
+			for (int i = 0; i < n1; i++) {
+				sa[ao + sa[reduced + i]] = i;
+			}
+		}
+
+		// Map the ranks back to the LMS positions, then induce the order of
+		// all the suffixes from the sorted LMS suffixes
+		for (int i = 1, j = reduced; i < n; i++) {
+			if (isLms(t, i)) {
+				sa[j++] = i;
+			}
+		}
+		for (int i = 0; i < n1; i++) {
+			sa[ao + i] = sa[reduced + sa[ao + i]];
+		}
+		Arrays.fill(sa, ao + n1, ao + n, -1);
+		buckets(s, so, n, alphabet, bkt, true);
+		for (int i = n1 - 1; i >= 0; i--) {
+			int j = sa[ao + i];
+			sa[ao + i] = -1;
+			sa[ao + --bkt[s[so + j]]] = j;
+		}
+		induce(s, so, n, alphabet, sa, ao, t, bkt);
+		return comparisons;
+	}
+
+	private static void types(int[] s, int so, int n, int[] t) {
+		t[n - 1] = 0;
+		for (int i = n - 2; i >= 0; i--) {
+			int a = s[so + i];
+			int b = s[so + i + 1];
+			t[i] = a < b || a == b && t[i + 1] == 1 ? 1 : 0;
+		}
+	}
+
+	// a suffix of type S whose predecessor is of type L
+	private static boolean isLms(int[] t, int i) {
+		return i > 0 && t[i] == 1 && t[i - 1] == 0;
+	}
+
+	// bkt[c] is the start of the bucket of character c, or its end if ends
+	private static void buckets(int[] s, int so, int n, int alphabet, int[] bkt, boolean ends) {
+		Arrays.fill(bkt, 0, alphabet + 1, 0);
+		for (int i = 0; i < n; i++) {
+			bkt[s[so + i] + 1]++;
+		}
+		for (int c = 0; c < alphabet; c++) {
+			bkt[c + 1] += bkt[c];
+		}
+		if (ends) {
+			System.arraycopy(bkt, 1, bkt, 0, alphabet);
+		}
+	}
+
+	// Induce the order of the L suffixes from left to right, starting with
+	// the one before the sentinel, then of the S suffixes from right to left
+	private static void induce(int[] s, int so, int n, int alphabet, int[] sa, int ao, int[] t, int[] bkt) {
+		buckets(s, so, n, alphabet, bkt, false);
+		sa[ao + bkt[s[so + n - 1]]++] = n - 1;
+		for (int i = 0; i < n; i++) {
+			int j = sa[ao + i] - 1;
+			if (j >= 0 && t[j] == 0) {
+				sa[ao + bkt[s[so + j]]++] = j;
+			}
+		}
+		buckets(s, so, n, alphabet, bkt, true);
+		for (int i = n - 1; i >= 0; i--) {
+			int j = sa[ao + i] - 1;
+			if (j >= 0 && t[j] == 1) {
+				sa[ao + --bkt[s[so + j]]] = j;
+			}
+		}
+	}
+
+	// Compute the longest common prefix of adjacent sorted suffixes in linear
+	// time. A text made of k copies of a shorter period has groups of k
+	// identical rotations, which share the whole length; the prefixes shared
+	// across groups are those of the rotations of the period itself, whose
+	// sorted order is the order of the groups.
+	private static int[] lcpArray(int[] text, int[] sa) {
+		int n = text.length;
+		if (n == 0) {
+			return new int[0];
+		}
+
+		int period = period(text);
+		int copies = n / period;
+		if (copies == 1) {
+			return kasai(text, n, sa);
+		}
+
+		int[] periodSa = new int[period];
+		for (int g = 0; g < period; g++) {
+			periodSa[g] = sa[g * copies] % period;
+		}
+		int[] periodLcp = kasai(text, period, periodSa);
+		int[] lcp = new int[n];
+		for (int g = 0; g < period; g++) {
+			lcp[g * copies] = periodLcp[g];
+			for (int j = 1; j < copies; j++) {
+				lcp[g * copies + j] = n;
+			}
+		}
+		return lcp;
+	}
+
+	// Shortest period of text that divides its length, from the longest
+	// proper prefix that is also a suffix (Knuth-Morris-Pratt failure function)
+	private static int period(int[] text) {
+		int n = text.length;
+		int[] border = new int[n];
+		for (int i = 1; i < n; i++) {
+			int k = border[i - 1];
+			while (k > 0 && text[i] != text[k]) {
+				k = border[k - 1];
+			}
+			border[i] = text[i] == text[k] ? k + 1 : 0;
+		}
+		int period = n - border[n - 1];
+		return n % period == 0 ? period : n;
+	}
+
+	// Kasai's algorithm over the circular text made of the first n characters
+	// of text, whose rotations are all distinct. Visiting suffixes in text
+	// order, the prefix shared by suffix p + 1 and its predecessor is at least
+	// one less than the one shared by suffix p and its predecessor, so the
+	// comparison resumes where the previous one stopped.
+	private static int[] kasai(int[] text, int n, int[] sa) {
+		int[] rank = new int[n];
+		for (int i = 0; i < n; i++) {
+			rank[sa[i]] = i;
+		}
+
+		int[] lcp = new int[n];
+		int h = 0;
+		for (int p = 0; p < n; p++) {
+			int r = rank[p];
+			if (r == 0) {
+				h = 0;
+				continue;
+			}
+
+			int q = sa[r - 1];
+			int i = p + h < n ? p + h : p + h - n;
+			int j = q + h < n ? q + h : q + h - n;
+			while (h < n && text[i] == text[j]) {
+				h++;
+				i = i + 1 < n ? i + 1 : 0;
+				j = j + 1 < n ? j + 1 : 0;
+			}
+			lcp[r] = h;
+			if (h > 0) {
+				h--;
+			}
+		}
+		return lcp;
 	}
 
 	public int length() {
 		// length of s
-		return s.length();
+		return length;
+	}
+
+	// number of comparisons made while sorting: characters of LMS substrings
+	// for induced sorting, and bytes for the parallel radix sort, including
+	// those made before it fell back to induced sorting
+	public long sortComparisons() {
+		return comparisons;
 	}
 
 	public int index(int i) {
 		// returns index of ith sorted suffix
-		if (i < 0 || i > s.length()-1) {
+		if (i < 0 || i > length - 1) {
 			throw new IllegalArgumentException("Index out-of-bound");
 		}
-		
-		return suffixes[i].index;
+
+		return index[i];
 	}
-	
+
+	// length of the longest common prefix of the (i - 1)th and ith sorted
+	// suffixes, 0 for the first one
+	public int lcp(int i) {
+		checkLcp();
+		if (i < 0 || i > length - 1) {
+			throw new IllegalArgumentException("Index out-of-bound");
+		}
+
+		return lcp[i];
+	}
+
+	// length of the longest substring of the circular text that starts at
+	// two different offsets
+	public int longestRepeatLength() {
+		checkLcp();
+		int best = 0;
+		for (int i = 1; i < length; i++) {
+			best = Math.max(best, lcp[i]);
+		}
+		return best;
+	}
+
+	// an offset where the longest repeated substring starts, -1 if no
+	// character repeats
+	public int longestRepeatIndex() {
+		checkLcp();
+		if (length == 0) {
+			return -1;
+		}
+
+		int best = 0;
+		int offset = -1;
+		for (int i = 1; i < length; i++) {
+			if (lcp[i] > best) {
+				best = lcp[i];
+				offset = index[i];
+			}
+		}
+		return offset;
+	}
+
+	// number of distinct non-empty substrings of the circular text of at most
+	// length characters. Each sorted suffix contributes its prefixes that are
+	// not shared with its predecessor.
+	public long distinctSubstrings() {
+		checkLcp();
+		if (length == 0) {
+			return 0;
+		}
+
+		long count = 0;
+		for (int i = 0; i < length; i++) {
+			count += length - lcp[i];
+		}
+		return count;
+	}
+
+	private void checkLcp() {
+		if (lcp == null) {
+			throw new IllegalStateException("Suffix array built without LCP array");
+		}
+	}
+
 	public static void main(String[] args) {
 		// unit testing (required)
 		String s = "ABRACADABRA!";
-		CircularSuffixArray array = new CircularSuffixArray(s);
+		CircularSuffixArray array = new CircularSuffixArray(s, true);
 		for (int i = 0; i < s.length(); i++) {
-			StdOut.println("Index[" + i + "]: " + array.index(i));
+			StdOut.println("Index[" + i + "]: " + array.index(i) + ", LCP: " + array.lcp(i));
 		}
+		int offset = array.longestRepeatIndex();
+		StdOut.println("Longest repeat: \"" + s.substring(offset, offset + array.longestRepeatLength()) + "\"");
+		StdOut.println("Distinct substrings: " + array.distinctSubstrings());
 	}
 }
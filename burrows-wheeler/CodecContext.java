@@ -0,0 +1,114 @@
+// Reusable scratch space for coding many blocks held in memory with the
+// Burrows-Wheeler transform and move-to-front. The suffix sort, the packed
+// rows of the inverse transform and the move-to-front tables are kept
+// between calls and only grow when a longer block comes in, so once the
+// buffers have reached the largest block size, coding produces no garbage;
+// the caller supplies the output buffers.
+// A context is not thread-safe. local() returns one context per thread, so
+// a service can code payloads on any number of threads without locking.
+public class CodecContext {
+	private static final int R = 256;
+	private static final ThreadLocal<CodecContext> LOCAL = new ThreadLocal<CodecContext>() {
+		@Override
+		protected CodecContext initialValue() {
+			return new CodecContext();
+		}
+	};
+
+	private int[] sa = new int[0];      // sorted suffixes, or packed rows when decoding
+	private int[] rank = new int[0];
+	private int[] tmp = new int[0];
+	private int[] count = new int[R + 1];
+	private final byte[] order = new byte[R];
+	private final int[] position = new int[R];
+
+	// the context of the calling thread
+	public static CodecContext local() {
+		return LOCAL.get();
+	}
+
+	// Apply the Burrows-Wheeler transform to the first length bytes of s,
+	// storing the last column in last and returning the index of the
+	// original message, as BurrowsWheeler.encode does
+	public int transform(byte[] s, int length, byte[] last) {
+		if (s == null || last == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+		if (length < 0 || length > s.length || length > last.length) {
+			throw new IllegalArgumentException("Length out-of-bound");
+		}
+
+		ensure(length);
+		CircularSuffixArray.sort(s, length, sa, rank, tmp, count);
+		return CircularSuffixArray.lastColumn(s, length, sa, last);
+	}
+
+	// Reconstruct the first length bytes of the original message into orig
+	// from the index of the original message and the last column t. Blocks
+	// longer than BurrowsWheeler.MAX_PACKED are decoded with temporary
+	// buffers.
+	public void inverseTransform(int first, byte[] t, int length, byte[] orig) {
+		if (t == null || orig == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+		if (length < 0 || length > t.length || length > orig.length) {
+			throw new IllegalArgumentException("Length out-of-bound");
+		}
+
+		if (length > BurrowsWheeler.MAX_PACKED) {
+			System.arraycopy(BurrowsWheeler.inverse(first, t, length), 0, orig, 0, length);
+			return;
+		}
+		ensure(length);
+		BurrowsWheeler.inverse(first, t, length, orig, sa, count);
+	}
+
+	// Apply move-to-front encoding to the first length bytes of in, writing
+	// the positions to out
+	public void moveToFrontEncode(byte[] in, int length, byte[] out) {
+		checkBuffers(in, length, out);
+		MoveToFront.reset(order, position);
+		MoveToFront.encode(in, length, out, order, position);
+	}
+
+	// Apply move-to-front decoding to the first length positions of in,
+	// writing the bytes to out
+	public void moveToFrontDecode(byte[] in, int length, byte[] out) {
+		checkBuffers(in, length, out);
+		MoveToFront.reset(order, null);
+		MoveToFront.decode(in, length, out, order);
+	}
+
+	// Drop the scratch buffers, for instance after an unusually large block
+	public void release() {
+		sa = new int[0];
+		rank = new int[0];
+		tmp = new int[0];
+		count = new int[R + 1];
+	}
+
+	private static void checkBuffers(byte[] in, int length, byte[] out) {
+		if (in == null || out == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+		if (length < 0 || length > in.length || length > out.length) {
+			throw new IllegalArgumentException("Length out-of-bound");
+		}
+	}
+
+	// Grow the scratch buffers to hold a block of length bytes, by at least
+	// half their size so that slowly growing blocks do not reallocate often
+	private void ensure(int length) {
+		if (sa.length < length) {
+			long grown = sa.length + (long) (sa.length >> 1);
+			int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(length, grown));
+			sa = new int[capacity];
+			rank = new int[capacity];
+			tmp = new int[capacity];
+		}
+		// induced sorting names at most half as many symbols as the length
+		if (count.length < sa.length / 2 + 1) {
+			count = new int[sa.length / 2 + 1];
+		}
+	}
+}
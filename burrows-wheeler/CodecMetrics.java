@@ -0,0 +1,114 @@
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Opt-in counters for the compression pipeline and the command-line
+// transforms: time, bytes in and out and number of calls per stage, number
+// of blocks, the largest buffer held for a block, and the comparisons made
+// by the suffix sorts. Updates are synchronized, so one instance can be
+// shared by blocks coded on different threads. Nothing is measured unless an
+// instance is passed in; main programs create one when the system property
+// codec.metrics is true, and report() it as a JSON line on standard error.
+public class CodecMetrics {
+	// per stage: nanoseconds, bytes in, bytes out, calls
+	private static final int NANOS = 0, IN = 1, OUT = 2, CALLS = 3;
+
+	private final long start = System.nanoTime();
+	private final Map<String, long[]> stages = new LinkedHashMap<>();
+	private long blocks;
+	private long bytesIn;
+	private long bytesOut;
+	private long peakBuffer;
+	private long sortComparisons;
+
+	// metrics for main programs: a new instance if the system property
+	// codec.metrics is true, null otherwise
+	public static CodecMetrics fromSystemProperty() {
+		return Boolean.getBoolean("codec.metrics") ? new CodecMetrics() : null;
+	}
+
+	// record one call of stage that took nanos to turn bytesIn bytes into
+	// bytesOut bytes. The output buffer counts towards the peak buffer size.
+	public synchronized void recordStage(String stage, long nanos, long bytesIn, long bytesOut) {
+		long[] s = stages.get(stage);
+		if (s == null) {
+			s = new long[4];
+			stages.put(stage, s);
+		}
+		s[NANOS] += nanos;
+		s[IN] += bytesIn;
+		s[OUT] += bytesOut;
+		s[CALLS]++;
+		peakBuffer = Math.max(peakBuffer, Math.max(bytesIn, bytesOut));
+	}
+
+	// record a block of bytesIn bytes coded into bytesOut bytes
+	public synchronized void recordBlock(long bytesIn, long bytesOut) {
+		blocks++;
+		this.bytesIn += bytesIn;
+		this.bytesOut += bytesOut;
+		peakBuffer = Math.max(peakBuffer, Math.max(bytesIn, bytesOut));
+	}
+
+	public synchronized void recordSortComparisons(long comparisons) {
+		sortComparisons += comparisons;
+	}
+
+	public synchronized long blocks() {
+		return blocks;
+	}
+
+	public synchronized long bytesIn() {
+		return bytesIn;
+	}
+
+	public synchronized long bytesOut() {
+		return bytesOut;
+	}
+
+	public synchronized long peakBuffer() {
+		return peakBuffer;
+	}
+
+	public synchronized long sortComparisons() {
+		return sortComparisons;
+	}
+
+	// total nanoseconds spent in stage, 0 if it never ran
+	public synchronized long stageNanos(String stage) {
+		long[] s = stages.get(stage);
+		return s == null ? 0 : s[NANOS];
+	}
+
+	// the metrics as a single line of JSON
+	public synchronized String toJson() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"elapsedNanos\":").append(System.nanoTime() - start);
+		json.append(",\"blocks\":").append(blocks);
+		json.append(",\"bytesIn\":").append(bytesIn);
+		json.append(",\"bytesOut\":").append(bytesOut);
+		json.append(",\"ratio\":").append(String.format(Locale.ROOT, "%.4f",
+				bytesIn == 0 ? 0.0 : (double) bytesOut / bytesIn));
+		json.append(",\"peakBuffer\":").append(peakBuffer);
+		json.append(",\"sortComparisons\":").append(sortComparisons);
+		json.append(",\"stages\":{");
+		boolean first = true;
+		for (Map.Entry<String, long[]> e : stages.entrySet()) {
+			long[] s = e.getValue();
+			if (!first) {
+				json.append(',');
+			}
+			first = false;
+			json.append('"').append(e.getKey()).append("\":{\"nanos\":").append(s[NANOS])
+					.append(",\"bytesIn\":").append(s[IN])
+					.append(",\"bytesOut\":").append(s[OUT])
+					.append(",\"calls\":").append(s[CALLS]).append('}');
+		}
+		return json.append("}}").toString();
+	}
+
+	// write the metrics as a JSON line to standard error
+	public void report() {
+		System.err.println(toJson());
+	}
+}
@@ -0,0 +1,176 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import edu.princeton.cs.algs4.BinaryStdOut;
+
+// In-process compression pipeline. Each block is passed through the stages in
+// order when encoding and in reverse order when decoding, with every stage
+// handing its output buffer directly to the next one. The standard pipeline
+// is Burrows-Wheeler, move-to-front, zero-run length and Huffman coding.
+public class CodecPipeline {
+	private static final int DEFAULT_BLOCK_SIZE = 900000;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final List<CodecStage> stages;
+	private final CodecMetrics metrics; // null unless measuring
+
+	public CodecPipeline(CodecStage... stages) {
+		this(null, stages);
+	}
+
+	// pipeline that records the time and sizes of every stage and block in
+	// metrics, unless it is null
+	public CodecPipeline(CodecMetrics metrics, CodecStage... stages) {
+		if (stages == null) {
+			throw new IllegalArgumentException("Null stages");
+		}
+		for (CodecStage stage : stages) {
+			if (stage == null) {
+				throw new IllegalArgumentException("Null stage");
+			}
+		}
+		this.stages = new ArrayList<>(Arrays.asList(stages));
+		this.metrics = metrics;
+	}
+
+	// BWT -> MTF -> zero-run RLE -> Huffman
+	public static CodecPipeline standard() {
+		return standard(null);
+	}
+
+	// standard pipeline recording into metrics, unless it is null
+	public static CodecPipeline standard(CodecMetrics metrics) {
+		return new CodecPipeline(metrics, new BurrowsWheelerStage(metrics), new MoveToFrontStage(),
+				new ZeroRunStage(), new HuffmanStage());
+	}
+
+	// the stages in encoding order
+	List<CodecStage> stages() {
+		return Collections.unmodifiableList(stages);
+	}
+
+	// encode the first length bytes of block through every stage, recording
+	// the block in metrics unless it is null
+	public byte[] encode(byte[] block, int length) {
+		byte[] buf = block;
+		int n = length;
+		for (CodecStage stage : stages) {
+			long start = System.nanoTime();
+			buf = stage.encode(buf, n);
+			record(stage, ".encode", start, n, buf.length);
+			n = buf.length;
+		}
+		if (metrics != null) {
+			metrics.recordBlock(length, n);
+		}
+		return buf == block ? Arrays.copyOf(buf, n) : buf;
+	}
+
+	// decode the first length bytes of block through every stage in reverse,
+	// recording the block in metrics unless it is null
+	public byte[] decode(byte[] block, int length) {
+		byte[] buf = block;
+		int n = length;
+		for (int i = stages.size() - 1; i >= 0; i--) {
+			long start = System.nanoTime();
+			buf = stages.get(i).decode(buf, n);
+			record(stages.get(i), ".decode", start, n, buf.length);
+			n = buf.length;
+		}
+		if (metrics != null) {
+			metrics.recordBlock(length, n);
+		}
+		return buf == block ? Arrays.copyOf(buf, n) : buf;
+	}
+
+	private void record(CodecStage stage, String direction, long start, int bytesIn, int bytesOut) {
+		if (metrics != null) {
+			String name = stage.getClass().getSimpleName() + direction;
+			metrics.recordStage(name, System.nanoTime() - start, bytesIn, bytesOut);
+		}
+	}
+
+	// read standard input in blocks of at most blockSize bytes and write each
+	// encoded block to standard output, prefixed by its encoded length
+	public void compress(int blockSize) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Block size must be positive");
+		}
+
+		byte[] block = new byte[blockSize];
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out, BUFFER_SIZE));
+		try {
+			int length;
+			while ((length = BurrowsWheeler.readFully(System.in, block, blockSize)) > 0) {
+				byte[] encoded = encode(block, length);
+				out.writeInt(encoded.length);
+				out.write(encoded);
+			}
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// read blocks written by compress from standard input and write the
+	// decoded bytes to standard output
+	public void decompress() {
+		InputStream in = new BufferedInputStream(System.in, BUFFER_SIZE);
+		BufferedOutputStream out = new BufferedOutputStream(System.out, BUFFER_SIZE);
+		byte[] header = new byte[4];
+		try {
+			int n;
+			while ((n = BurrowsWheeler.readFully(in, header, 4)) > 0) {
+				if (n < 4) {
+					throw new IllegalArgumentException("Truncated block length");
+				}
+				int length = BurrowsWheeler.readInt(header, 0);
+				if (length < 0) {
+					throw new IllegalArgumentException("Malformed block length " + length);
+				}
+				byte[] block = new byte[length];
+				if (BurrowsWheeler.readFully(in, block, length) < length) {
+					throw new IllegalArgumentException("Truncated block of " + length + " bytes");
+				}
+
+				byte[] decoded = decode(block, length);
+				out.write(decoded);
+			}
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// if args[0] is '-', compress with the standard pipeline
+	// if args[0] is '+', decompress
+	// optional args[1] is the block size used for compression
+	// if the system property codec.metrics is true, write metrics as a JSON
+	// line to standard error when done
+	public static void main(String[] args) {
+		if (args.length != 1 && args.length != 2) {
+			BinaryStdOut.write("Wrong argument! Must indicate compress (-) or decompress (+)!");
+			return;
+		}
+
+		CodecMetrics metrics = CodecMetrics.fromSystemProperty();
+		CodecPipeline pipeline = standard(metrics);
+		if (args[0].equals("-")) {
+			pipeline.compress(args.length == 2 ? Integer.parseInt(args[1]) : DEFAULT_BLOCK_SIZE);
+		} else if (args[0].equals("+")) {
+			pipeline.decompress();
+		}
+
+		if (metrics != null) {
+			metrics.report();
+		}
+	}
+}
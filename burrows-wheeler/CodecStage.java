@@ -0,0 +1,11 @@
+// A stage of the in-process compression pipeline. A stage transforms a whole
+// block held in memory and hands its output buffer directly to the next
+// stage. decode(encode(x)) must return x, and neither method may use global
+// state, so a stage can be shared across threads.
+public interface CodecStage {
+	// encode the first length bytes of in
+	byte[] encode(byte[] in, int length);
+
+	// decode the first length bytes of in
+	byte[] decode(byte[] in, int length);
+}
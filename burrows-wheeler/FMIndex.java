@@ -0,0 +1,372 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import edu.princeton.cs.algs4.StdIn;
+import edu.princeton.cs.algs4.StdOut;
+
+// FM-index over the Burrows-Wheeler transform of a text, answering how many
+// times and where a pattern occurs without decompressing the text.
+// The index keeps the last column, character counts every OCC_INTERVAL rows,
+// and the text offset of every row whose offset is a multiple of SA_SAMPLE.
+// The counts are split in two levels: an int per character every
+// SUPER_INTERVAL rows, and a 16-bit count relative to it every OCC_INTERVAL
+// rows. Rank queries scan from the nearer checkpoint, at most half of
+// OCC_INTERVAL bytes. The whole index takes about 2.5 bytes per text byte:
+// 1 for the last column, 1 for the relative counts, and the rest for the
+// superblock counts and the sampled offsets.
+// Because the transform sorts circular suffixes, backward search finds
+// occurrences in the circular text; the ones that wrap around the end are
+// recognized and left out, so results are those of the plain text.
+public class FMIndex {
+	private static final int R = 256;
+	private static final int OCC_INTERVAL = 512;
+	private static final int SUPER_INTERVAL = 1 << 16; // a multiple of OCC_INTERVAL, at most 2^16
+	private static final int BLOCKS_PER_SUPER = SUPER_INTERVAL / OCC_INTERVAL;
+	private static final int SA_SAMPLE = 32;
+
+	private final int length;
+	private final int first;       // row of the rotation starting at offset 0
+	private final byte[] last;     // last column
+	private final int[] c;         // c[r] is the number of characters less than r
+	private final int[] superOcc;  // superOcc[s * R + r] is the number of r in last[0, s * SUPER_INTERVAL)
+	private final char[] occ;      // occ[b * R + r] is the number of r in last[0, b * OCC_INTERVAL), less the superblock count
+	private final long[] sampled;  // bit set of rows whose offset is sampled
+	private final int[] rankBase;  // number of sampled rows before each word of sampled
+	private final int[] offsets;   // offsets of the sampled rows, in row order
+	private final int[] rows;      // rows[k] is the row of offset k * SA_SAMPLE
+
+	// index of the text whose Burrows-Wheeler transform is (first, last), as
+	// produced by BurrowsWheeler.encode, without recovering the text. The
+	// index keeps last as it is, so it must not be modified afterwards.
+	public FMIndex(int first, byte[] last) {
+		if (last == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+		if (last.length > 0 && (first < 0 || first >= last.length)) {
+			throw new IllegalArgumentException("Index of the original message out of range: " + first);
+		}
+
+		this.length = last.length;
+		this.first = first;
+		this.last = last;
+		c = new int[R + 1];
+		superOcc = new int[(length / SUPER_INTERVAL + 1) * R];
+		occ = new char[(length / OCC_INTERVAL + 1) * R];
+		buildOcc(last, c, superOcc, occ);
+		sampled = new long[(length + 63) >>> 6];
+		rows = new int[(length + SA_SAMPLE - 1) / SA_SAMPLE];
+
+		// Walking the LF mapping from the row of offset 0 visits the rows of
+		// offsets n - 1, n - 2, ... in turn. If the text is made of k copies
+		// of a period of p characters, the walk returns to the first row after
+		// p steps, and the rows come in groups of k identical rotations. Each
+		// of the k rows in the group of the first row then starts a cycle of
+		// its own, labeled from a different multiple of p. The last row of
+		// every cycle is sampled too, so that locating stops before a walk
+		// would wrap around its cycle.
+		int period = 0;
+		int copies = 0;
+		int[] ends = new int[1];
+		if (length > 0) {
+			period = sampleCycle(first, 0, length, ends, 0);
+			copies = length / period;
+			ends = Arrays.copyOf(ends, copies);
+		}
+		int group = copies == 0 ? 0 : first - first % copies;
+		for (int j = 1, row = group; row < group + copies; row++) {
+			if (row != first) {
+				sampleCycle(row, j * period, period, ends, j);
+				j++;
+			}
+		}
+
+		rankBase = buildRank(sampled);
+		offsets = new int[rankBase[sampled.length]];
+		for (int j = 0; j < copies; j++) {
+			// the last label of cycle j is j * p - p + 1, modulo the length
+			offsets[sampledRank(ends[j])] = ((j - 1) * period + 1 + length) % length;
+		}
+		for (int k = 0; k < rows.length; k++) {
+			offsets[sampledRank(rows[k])] = k * SA_SAMPLE;
+		}
+	}
+
+	// index of text, built from its Burrows-Wheeler transform
+	public static FMIndex of(byte[] text) {
+		if (text == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+
+		byte[] last = new byte[text.length];
+		int first = BurrowsWheeler.transform(text, text.length, last);
+		return new FMIndex(first, last);
+	}
+
+	// index of the output of BurrowsWheeler.encode
+	public static FMIndex fromEncoded(byte[] encoded) {
+		if (encoded == null || encoded.length < 4) {
+			throw new IllegalArgumentException("Missing index of the original message");
+		}
+
+		byte[] last = new byte[encoded.length - 4];
+		System.arraycopy(encoded, 4, last, 0, last.length);
+		return new FMIndex(BurrowsWheeler.readInt(encoded, 0), last);
+	}
+
+	// Label the rows on the LF cycle from row with offsets start, start - 1,
+	// ... (modulo the length), recording the sampled ones, for at most limit
+	// steps or until the cycle closes. The last row visited is sampled and
+	// stored in ends[j]. Returns the number of rows visited.
+	private int sampleCycle(int row, int start, int limit, int[] ends, int j) {
+		int offset = start;
+		int steps = 0;
+		int r = row;
+		int end = row;
+		do {
+			if (offset % SA_SAMPLE == 0) {
+				sampled[r >>> 6] |= 1L << (r & 63);
+				rows[offset / SA_SAMPLE] = r;
+			}
+			end = r;
+			r = lf(r);
+			offset = (offset == 0 ? length : offset) - 1;
+			steps++;
+		} while (r != row && steps < limit);
+		sampled[end >>> 6] |= 1L << (end & 63);
+		ends[j] = end;
+		return steps;
+	}
+
+	// Count characters of last, filling c and both levels of checkpoints,
+	// which cover every multiple of their interval up to the length
+	private static void buildOcc(byte[] last, int[] c, int[] superOcc, char[] occ) {
+		int[] count = new int[R];
+		for (int i = 0; i <= last.length; i++) {
+			if (i % SUPER_INTERVAL == 0) {
+				System.arraycopy(count, 0, superOcc, (i / SUPER_INTERVAL) * R, R);
+			}
+			if (i % OCC_INTERVAL == 0) {
+				int block = (i / OCC_INTERVAL) * R;
+				int base = (i / SUPER_INTERVAL) * R;
+				for (int r = 0; r < R; r++) {
+					occ[block + r] = (char) (count[r] - superOcc[base + r]);
+				}
+			}
+			if (i < last.length) {
+				count[last[i] & 0xff]++;
+			}
+		}
+
+		for (int r = 0; r < R; r++) {
+			c[r + 1] = c[r] + count[r];
+		}
+	}
+
+	private static int[] buildRank(long[] bits) {
+		int[] base = new int[bits.length + 1];
+		for (int w = 0; w < bits.length; w++) {
+			base[w + 1] = base[w] + Long.bitCount(bits[w]);
+		}
+		return base;
+	}
+
+	// number of occurrences of character r in last[0, i), scanning forward
+	// from the checkpoint before i or backward from the one after it
+	private int rank(int r, int i) {
+		int block = i / OCC_INTERVAL;
+		int from = block * OCC_INTERVAL;
+		byte b = (byte) r;
+		if (i - from > OCC_INTERVAL / 2 && from + OCC_INTERVAL <= length) {
+			int count = checkpoint(r, block + 1);
+			for (int j = from + OCC_INTERVAL - 1; j >= i; j--) {
+				if (last[j] == b) {
+					count--;
+				}
+			}
+			return count;
+		}
+
+		int count = checkpoint(r, block);
+		for (int j = from; j < i; j++) {
+			if (last[j] == b) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	// number of occurrences of character r in last[0, block * OCC_INTERVAL)
+	private int checkpoint(int r, int block) {
+		return superOcc[(block / BLOCKS_PER_SUPER) * R + r] + occ[block * R + r];
+	}
+
+	// row of the rotation that starts one character before that of row i
+	private int lf(int i) {
+		int r = last[i] & 0xff;
+		return c[r] + rank(r, i);
+	}
+
+	private boolean isSampled(int row) {
+		return (sampled[row >>> 6] & (1L << (row & 63))) != 0;
+	}
+
+	// number of sampled rows before row
+	private int sampledRank(int row) {
+		long below = sampled[row >>> 6] & ((1L << (row & 63)) - 1);
+		return rankBase[row >>> 6] + Long.bitCount(below);
+	}
+
+	public int length() {
+		// length of the indexed text
+		return length;
+	}
+
+	// Find the range of rows [lo, hi) whose rotations start with pattern,
+	// matching it from its last character backwards
+	private int[] range(byte[] pattern) {
+		int lo = 0;
+		int hi = length;
+		for (int i = pattern.length - 1; i >= 0 && lo < hi; i--) {
+			int r = pattern[i] & 0xff;
+			lo = c[r] + rank(r, lo);
+			hi = c[r] + rank(r, hi);
+		}
+		return new int[] { lo, hi };
+	}
+
+	// number of occurrences of pattern in the text
+	public int count(byte[] pattern) {
+		if (pattern == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+		if (pattern.length == 0) {
+			throw new IllegalArgumentException("Empty pattern");
+		}
+		if (pattern.length > length) {
+			return 0;
+		}
+
+		int[] range = range(pattern);
+		int count = range[1] - range[0];
+		if (count == 0) {
+			return 0;
+		}
+
+		// Leave out the occurrences that wrap around the end of the text. They
+		// start in the last m - 1 bytes, so they lie within those bytes
+		// followed by the first m - 1, which are extracted once.
+		int m = pattern.length;
+		byte[] wrap = new byte[2 * (m - 1)];
+		System.arraycopy(extract(length - m + 1, m - 1), 0, wrap, 0, m - 1);
+		System.arraycopy(extract(0, m - 1), 0, wrap, m - 1, m - 1);
+		for (int k = 0; k < m - 1; k++) {
+			if (matches(wrap, k, pattern)) {
+				count--;
+			}
+		}
+		return count;
+	}
+
+	// does pattern occur in text at offset
+	private static boolean matches(byte[] text, int offset, byte[] pattern) {
+		for (int i = 0; i < pattern.length; i++) {
+			if (text[offset + i] != pattern[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// offsets of the occurrences of pattern in the text, in increasing order
+	public List<Integer> locate(byte[] pattern) {
+		if (pattern == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+
+		if (pattern.length == 0) {
+			throw new IllegalArgumentException("Empty pattern");
+		}
+
+		List<Integer> result = new ArrayList<>();
+		if (pattern.length > length) {
+			return result;
+		}
+
+		int[] range = range(pattern);
+		for (int i = range[0]; i < range[1]; i++) {
+			int offset = offset(i);
+			if (offset + pattern.length <= length) {
+				result.add(offset);
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	// text offset of the rotation in row i, found by walking the LF mapping
+	// to the nearest sampled row
+	private int offset(int i) {
+		int steps = 0;
+		int row = i;
+		while (!isSampled(row)) {
+			row = lf(row);
+			steps++;
+		}
+		return (offsets[sampledRank(row)] + steps) % length;
+	}
+
+	// the count bytes of the text starting at offset, decoded backwards from
+	// the nearest sampled offset at or after their end
+	public byte[] extract(int offset, int count) {
+		if (offset < 0 || count < 0 || offset + count > length) {
+			throw new IllegalArgumentException("Range out-of-bound");
+		}
+
+		byte[] result = new byte[count];
+		if (count == 0) {
+			return result;
+		}
+		int end = offset + count;
+		int sample = (end + SA_SAMPLE - 1) / SA_SAMPLE;
+		int position = Math.min(sample * SA_SAMPLE, length);
+		int row = position == length ? first : rows[sample];
+
+		// last[row] is the character just before the offset of row
+		while (position > end) {
+			row = lf(row);
+			position--;
+		}
+		while (position > offset) {
+			result[--position - offset] = last[row];
+			row = lf(row);
+		}
+		return result;
+	}
+
+	// Build an index of the file written by BurrowsWheeler.transform() given
+	// as args[0], then print the count and first offsets of every pattern
+	// read from standard input, one per line, skipping empty lines
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: FMIndex file < patterns");
+			return;
+		}
+
+		FMIndex index = fromEncoded(Files.readAllBytes(Paths.get(args[0])));
+		while (StdIn.hasNextLine()) {
+			String line = StdIn.readLine();
+			if (line.isEmpty()) {
+				continue;
+			}
+			byte[] pattern = line.getBytes("ISO-8859-1");
+			List<Integer> offsets = index.locate(pattern);
+			StdOut.println("\"" + line + "\": " + index.count(pattern) + " occurrences "
+					+ offsets.subList(0, Math.min(10, offsets.size())));
+		}
+	}
+}
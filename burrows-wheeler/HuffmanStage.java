@@ -0,0 +1,175 @@
+import java.util.PriorityQueue;
+
+// Huffman entropy coding stage using a canonical code, so only the code
+// length of each of the R byte values has to be stored. The output is the
+// input length as 4 bytes, R code lengths, then the code bits (most
+// significant bit first, last byte padded with zeros).
+public class HuffmanStage implements CodecStage {
+	private static final int R = 256;
+	private static final int HEADER = 4 + R;
+	private static final int MAX_LENGTH = 63; // codes are kept in a long
+
+	// Huffman trie node
+	private static class Node implements Comparable<Node> {
+		private final long freq;
+		private final int symbol;
+		private final Node left, right;
+
+		Node(long freq, int symbol, Node left, Node right) {
+			this.freq = freq;
+			this.symbol = symbol;
+			this.left = left;
+			this.right = right;
+		}
+
+		public int compareTo(Node that) {
+			return Long.compare(this.freq, that.freq);
+		}
+	}
+
+	public byte[] encode(byte[] in, int length) {
+		long[] freq = new long[R];
+		for (int i = 0; i < length; i++) {
+			freq[in[i] & 0xff]++;
+		}
+
+		int[] len = codeLengths(freq);
+		long[] code = canonicalCodes(len);
+
+		long bits = 0;
+		for (int r = 0; r < R; r++) {
+			bits += freq[r] * len[r];
+		}
+		byte[] out = new byte[HEADER + (int) ((bits + 7) >>> 3)];
+		BurrowsWheeler.writeInt(out, 0, length);
+		for (int r = 0; r < R; r++) {
+			out[4 + r] = (byte) len[r];
+		}
+
+		// Pack the codes, most significant bit first
+		int pos = HEADER;
+		long buffer = 0;
+		int n = 0;
+		for (int i = 0; i < length; i++) {
+			int c = in[i] & 0xff;
+			for (int b = len[c] - 1; b >= 0; b--) {
+				buffer = (buffer << 1) | ((code[c] >>> b) & 1);
+				if (++n == 8) {
+					out[pos++] = (byte) buffer;
+					buffer = 0;
+					n = 0;
+				}
+			}
+		}
+		if (n > 0) {
+			out[pos] = (byte) (buffer << (8 - n));
+		}
+		return out;
+	}
+
+	public byte[] decode(byte[] in, int length) {
+		if (length < HEADER) {
+			throw new IllegalArgumentException("Truncated Huffman block");
+		}
+		int n = BurrowsWheeler.readInt(in, 0);
+		if (n < 0) {
+			throw new IllegalArgumentException("Malformed Huffman block");
+		}
+
+		// Number of codes of each length, and symbols in canonical order
+		int[] count = new int[MAX_LENGTH + 1];
+		int[] symbols = new int[R];
+		int k = 0;
+		for (int l = 1; l <= MAX_LENGTH; l++) {
+			for (int r = 0; r < R; r++) {
+				if ((in[4 + r] & 0xff) == l) {
+					count[l]++;
+					symbols[k++] = r;
+				}
+			}
+		}
+
+		byte[] out = new byte[n];
+		int pos = HEADER;
+		int bit = 7;
+		for (int i = 0; i < n; i++) {
+			// Canonical decoding: walk down the lengths until the code read so
+			// far falls within the range of codes of the current length
+			long code = 0;
+			long first = 0;
+			int index = 0;
+			int l = 1;
+			while (true) {
+				if (l > MAX_LENGTH || pos >= length) {
+					throw new IllegalArgumentException("Malformed Huffman block");
+				}
+				code |= (in[pos] >>> bit) & 1;
+				if (--bit < 0) {
+					bit = 7;
+					pos++;
+				}
+				if (code - first < count[l]) {
+					out[i] = (byte) symbols[index + (int) (code - first)];
+					break;
+				}
+				index += count[l];
+				first = (first + count[l]) << 1;
+				code <<= 1;
+				l++;
+			}
+		}
+		return out;
+	}
+
+	// Compute the code length of each symbol from a Huffman trie
+	private static int[] codeLengths(long[] freq) {
+		PriorityQueue<Node> pq = new PriorityQueue<>();
+		for (int r = 0; r < R; r++) {
+			if (freq[r] > 0) {
+				pq.add(new Node(freq[r], r, null, null));
+			}
+		}
+
+		int[] len = new int[R];
+		if (pq.size() == 1) {
+			// A single distinct symbol still needs a one-bit code
+			len[pq.peek().symbol] = 1;
+			return len;
+		}
+		while (pq.size() > 1) {
+			Node x = pq.poll();
+			Node y = pq.poll();
+			pq.add(new Node(x.freq + y.freq, -1, x, y));
+		}
+		if (!pq.isEmpty()) {
+			assignLengths(pq.poll(), 0, len);
+		}
+		return len;
+	}
+
+	private static void assignLengths(Node x, int depth, int[] len) {
+		if (x.left == null) {
+			len[x.symbol] = depth;
+			return;
+		}
+		assignLengths(x.left, depth + 1, len);
+		assignLengths(x.right, depth + 1, len);
+	}
+
+	// Assign consecutive codes to the symbols ordered by (length, symbol)
+	private static long[] canonicalCodes(int[] len) {
+		long[] code = new long[R];
+		long next = 0;
+		int prevLen = 0;
+		for (int l = 1; l <= MAX_LENGTH; l++) {
+			for (int r = 0; r < R; r++) {
+				if (len[r] == l) {
+					next <<= (l - prevLen);
+					prevLen = l;
+					code[r] = next++;
+				}
+			}
+		}
+		return code;
+	}
+}
@@ -0,0 +1,108 @@
+/******************************************************************************
+ *  Compilation:  javac InverseTransformBenchmark.java
+ *  Execution:    java InverseTransformBenchmark [block size in bytes] [streams]
+ *  Dependencies: BurrowsWheeler.java MoveToFrontBenchmark.java
+ *
+ *  Compare the throughput of the Burrows-Wheeler inverse transform on large
+ *  blocks (64 MB by default) between the original loop, which reads the
+ *  first column and the next array separately, the packed loop (the split
+ *  layout for blocks past 16 MB), and the interleaved decoding of several
+ *  independent blocks of the same size.
+ *
+ ******************************************************************************/
+
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+
+public class InverseTransformBenchmark {
+	private static final int R = 256;
+
+	// The original inverse: separate first column and next arrays
+	private static byte[] unpackedInverse(int first, byte[] t, int length) {
+		byte[] f = new byte[length];
+		int[] next = new int[length];
+		int[] count = new int[R + 1];
+		for (int i = 0; i < length; i++) {
+			count[(t[i] & 0xff) + 1]++;
+		}
+		for (int r = 0; r < R; r++) {
+			count[r + 1] += count[r];
+		}
+		for (int i = 0; i < length; i++) {
+			int c = t[i] & 0xff;
+			f[count[c]] = t[i];
+			next[count[c]] = i;
+			count[c]++;
+		}
+
+		byte[] orig = new byte[length];
+		for (int i = 0; i < length; i++) {
+			orig[i] = f[first];
+			first = next[first];
+		}
+		return orig;
+	}
+
+	private static void report(String name, long bytes, double seconds) {
+		StdOut.printf("%-28s %9.3f s %9.1f MB/s\n", name, seconds, bytes / 1e6 / Math.max(seconds, 1e-3));
+	}
+
+	public static void main(String[] args) {
+		int size = args.length >= 1 ? Integer.parseInt(args[0]) : 64 << 20;
+		int streams = args.length >= 2 ? Integer.parseInt(args[1]) : 4;
+
+		// Transform once, then decode the same block from every stream, which
+		// behaves like independent blocks since the chains do not share cache
+		byte[] text = MoveToFrontBenchmark.text(size);
+		Stopwatch sw = new Stopwatch();
+		byte[] encoded = BurrowsWheeler.encode(text);
+		StdOut.printf("transform of %d bytes took %.3f s\n", size, sw.elapsedTime());
+		int first = BurrowsWheeler.readInt(encoded, 0);
+		byte[] last = Arrays.copyOfRange(encoded, 4, encoded.length);
+
+		// Warm up every path on a small block
+		byte[] small = BurrowsWheeler.encode(Arrays.copyOf(text, 1 << 16));
+		byte[] smallLast = Arrays.copyOfRange(small, 4, small.length);
+		int smallFirst = BurrowsWheeler.readInt(small, 0);
+		for (int r = 0; r < 5; r++) {
+			unpackedInverse(smallFirst, smallLast, smallLast.length);
+			BurrowsWheeler.inverse(smallFirst, smallLast, smallLast.length);
+			BurrowsWheeler.inverse(new int[] { smallFirst, smallFirst },
+					new byte[][] { smallLast, smallLast }, new int[] { smallLast.length, smallLast.length });
+		}
+
+		sw = new Stopwatch();
+		byte[] orig = unpackedInverse(first, last, size);
+		report("unpacked (original)", size, sw.elapsedTime());
+		if (!Arrays.equals(orig, text)) {
+			throw new IllegalStateException("Unpacked inverse mismatch");
+		}
+
+		sw = new Stopwatch();
+		orig = BurrowsWheeler.inverse(first, last, size);
+		String layout = size <= BurrowsWheeler.MAX_PACKED ? "packed" : "split";
+		report(layout, size, sw.elapsedTime());
+		if (!Arrays.equals(orig, text)) {
+			throw new IllegalStateException("Inverse mismatch");
+		}
+
+		int[] firsts = new int[streams];
+		byte[][] lasts = new byte[streams][];
+		int[] lengths = new int[streams];
+		for (int j = 0; j < streams; j++) {
+			firsts[j] = first;
+			lasts[j] = last;
+			lengths[j] = size;
+		}
+		sw = new Stopwatch();
+		byte[][] origs = BurrowsWheeler.inverse(firsts, lasts, lengths);
+		report(layout + ", " + streams + " interleaved", (long) size * streams, sw.elapsedTime());
+		for (int j = 0; j < streams; j++) {
+			if (!Arrays.equals(origs[j], text)) {
+				throw new IllegalStateException("Interleaved inverse mismatch");
+			}
+		}
+	}
+}
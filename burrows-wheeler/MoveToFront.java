@@ -1,74 +1,294 @@
-import edu.princeton.cs.algs4.BinaryStdIn;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 import edu.princeton.cs.algs4.BinaryStdOut;
 
 public class MoveToFront {
 	private static final int R = 256;
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int WFC_INCREMENT = 1 << 10;  // initial weight of an occurrence
+	private static final int WFC_RESCALE = 1 << 22;    // halve all weights past this increment
+
+	// List update rules. Each is applied after coding the character at some
+	// position of the list, identically by the encoder and the decoder.
+	public enum Variant {
+		// move the character to the front
+		MTF,
+		// move a character at position 1 to the front, and one further back
+		// to position 1, so a single stray character does not push the
+		// character of the current run away from the front
+		MTF1,
+		// as MTF1, except that a character at position 1 stays there if
+		// the previous position coded was 0
+		MTF2,
+		// weighted frequency count: keep the list ordered by a count of
+		// occurrences in which recent ones weigh more, the weight of each
+		// new occurrence growing by 1/8
+		WFC
+	}
 
 	// Apply move-to-front encoding, reading from standard input and writing to
 	// standard output.
-	// Maintain an ordered sequence of 256 extended ASCII characters.
+	// Maintain an ordered sequence of 256 extended ASCII characters, together
+	// with the inverse table giving the position of each character, and
+	// process the input one buffer at a time.
 	public static void encode() {
-		char[] ascii = new char[R];
-		for (char i = 0; i < R; i++) {
-			ascii[i] = i;
-		}
-
-		while (!BinaryStdIn.isEmpty()) {
-			char c = BinaryStdIn.readChar();
-			for (char i = 0; i < R; i++) {
-				if (c == ascii[i]) {
-					// Write the position
-					BinaryStdOut.write(i);
-
-					// Move to front and shift the preceding characters by 1
-					for (char j = i; j >= 1; j--) {
-						ascii[j] = ascii[j - 1];
-					}
-					ascii[0] = c;
-					break;
+		encode((CodecMetrics) null);
+	}
+
+	// Encode standard input, recording each buffer in metrics unless it is null
+	private static void encode(CodecMetrics metrics) {
+		byte[] order = new byte[R];
+		int[] position = new int[R];
+		reset(order, position);
+
+		byte[] in = new byte[BUFFER_SIZE];
+		byte[] out = new byte[BUFFER_SIZE];
+		int n;
+		while ((n = read(in)) > 0) {
+			long start = System.nanoTime();
+			encode(in, n, out, order, position);
+			record(metrics, "MoveToFront.encode", start, n);
+			System.out.write(out, 0, n);
+		}
+
+		System.out.flush();
+	}
+
+	// Apply move-to-front encoding to the first length bytes of in, writing
+	// the positions to out. Uses no global state, so independent blocks can
+	// be encoded concurrently.
+	static void encode(byte[] in, int length, byte[] out) {
+		byte[] order = new byte[R];
+		int[] position = new int[R];
+		reset(order, position);
+		encode(in, length, out, order, position);
+	}
+
+	// Encode with the given sequence and its inverse table, which are updated
+	// so that encoding can continue with the next buffer. Finding a character
+	// is a table lookup; moving it to the front shifts the preceding
+	// characters with System.arraycopy, and is free for the common case of a
+	// character that is already at the front.
+	static void encode(byte[] in, int length, byte[] out, byte[] order, int[] position) {
+		for (int i = 0; i < length; i++) {
+			int c = in[i] & 0xff;
+			int pos = position[c];
+			// Write the position
+			out[i] = (byte) pos;
+
+			if (pos > 0) {
+				// Move to front and shift the preceding characters by 1
+				for (int j = 0; j < pos; j++) {
+					position[order[j] & 0xff]++;
+				}
+				System.arraycopy(order, 0, order, 1, pos);
+				order[0] = (byte) c;
+				position[c] = 0;
+			}
+		}
+	}
+
+	// Encode the first length bytes of in with the given list update rule,
+	// writing the positions to out
+	static void encode(byte[] in, int length, byte[] out, Variant variant) {
+		if (variant == Variant.MTF) {
+			encode(in, length, out);
+			return;
+		}
+
+		CharacterList list = new CharacterList(variant, true);
+		for (int i = 0; i < length; i++) {
+			int pos = list.position[in[i] & 0xff];
+			out[i] = (byte) pos;
+			list.update(pos);
+		}
+	}
+
+	// Decode the first length positions of in with the given list update
+	// rule, writing the bytes to out
+	static void decode(byte[] in, int length, byte[] out, Variant variant) {
+		if (variant == Variant.MTF) {
+			decode(in, length, out);
+			return;
+		}
+
+		CharacterList list = new CharacterList(variant, false);
+		for (int i = 0; i < length; i++) {
+			int pos = in[i] & 0xff;
+			out[i] = list.order[pos];
+			list.update(pos);
+		}
+	}
+
+	// The list of characters under one of the update rules other than MTF,
+	// with the inverse table when encoding
+	private static class CharacterList {
+		private final Variant variant;
+		private final byte[] order = new byte[R];
+		private final int[] position;
+		private final int[] weight;
+		private int increment = WFC_INCREMENT;
+		private int previous;
+
+		CharacterList(Variant variant, boolean encoding) {
+			this.variant = variant;
+			this.position = encoding ? new int[R] : null;
+			this.weight = variant == Variant.WFC ? new int[R] : null;
+			reset(order, position);
+		}
+
+		// Apply the update rule to the character at pos
+		void update(int pos) {
+			int target;
+			if (variant == Variant.WFC) {
+				target = weigh(pos);
+			} else if (pos == 1) {
+				target = variant == Variant.MTF2 && previous == 0 ? 1 : 0;
+			} else {
+				target = Math.min(pos, 1);
+			}
+			previous = pos;
+			if (target < pos) {
+				move(pos, target);
+			}
+		}
+
+		// Add an occurrence to the weight of the character at pos and return
+		// the position that keeps the list ordered by decreasing weight
+		private int weigh(int pos) {
+			int c = order[pos] & 0xff;
+			weight[c] += increment;
+			increment += increment >>> 3;
+			if (increment >= WFC_RESCALE) {
+				for (int r = 0; r < R; r++) {
+					weight[r] >>>= 1;
 				}
+				increment >>>= 1;
+			}
+
+			int target = pos;
+			while (target > 0 && weight[order[target - 1] & 0xff] <= weight[c]) {
+				target--;
 			}
+			return target;
 		}
 
-		BinaryStdOut.flush();
+		// Move the character at from to target, shifting the ones in between
+		private void move(int from, int target) {
+			byte c = order[from];
+			if (position != null) {
+				for (int j = target; j < from; j++) {
+					position[order[j] & 0xff]++;
+				}
+				position[c & 0xff] = target;
+			}
+			System.arraycopy(order, target, order, target + 1, from - target);
+			order[target] = c;
+		}
 	}
 
 	// apply move-to-front decoding, reading from standard input and writing to
 	// standard output
 	public static void decode() {
-		char[] ascii = new char[R];
-		for (char i = 0; i < R; i++) {
-			ascii[i] = i;
+		decode((CodecMetrics) null);
+	}
+
+	// Decode standard input, recording each buffer in metrics unless it is null
+	private static void decode(CodecMetrics metrics) {
+		byte[] order = new byte[R];
+		reset(order, null);
+
+		byte[] in = new byte[BUFFER_SIZE];
+		byte[] out = new byte[BUFFER_SIZE];
+		int n;
+		while ((n = read(in)) > 0) {
+			long start = System.nanoTime();
+			decode(in, n, out, order);
+			record(metrics, "MoveToFront.decode", start, n);
+			System.out.write(out, 0, n);
 		}
 
-		while (!BinaryStdIn.isEmpty()) {
-			char pos = BinaryStdIn.readChar();
+		System.out.flush();
+	}
+
+	// Apply move-to-front decoding to the first length positions of in,
+	// writing the bytes to out.
+	static void decode(byte[] in, int length, byte[] out) {
+		byte[] order = new byte[R];
+		reset(order, null);
+		decode(in, length, out, order);
+	}
+
+	// Decode with the given sequence, which is updated so that decoding can
+	// continue with the next buffer
+	static void decode(byte[] in, int length, byte[] out, byte[] order) {
+		for (int i = 0; i < length; i++) {
+			int pos = in[i] & 0xff;
 			// Write the character
-			char c = ascii[pos];
-			BinaryStdOut.write(c);
+			byte c = order[pos];
+			out[i] = c;
 
 			// Move it to the front
-			for (char i = pos; i >= 1; i--) {
-				ascii[i] = ascii[i - 1];
+			if (pos > 0) {
+				System.arraycopy(order, 0, order, 1, pos);
+				order[0] = c;
+			}
+		}
+	}
+
+	// Start from the sequence of characters in increasing order
+	static void reset(byte[] order, int[] position) {
+		for (int i = 0; i < R; i++) {
+			order[i] = (byte) i;
+			if (position != null) {
+				position[i] = i;
 			}
-			ascii[0] = c;
 		}
+	}
 
-		BinaryStdOut.flush();
+	// Record a buffer of length bytes coded since start, unless metrics is null
+	private static void record(CodecMetrics metrics, String stage, long start, int length) {
+		if (metrics != null) {
+			metrics.recordStage(stage, System.nanoTime() - start, length, length);
+			metrics.recordBlock(length, length);
+		}
+	}
+
+	// Fill buf from standard input, returning the number of bytes read, less
+	// than its length only at the end of the input
+	private static int read(byte[] buf) {
+		try {
+			int n = 0;
+			int read;
+			while (n < buf.length && (read = System.in.read(buf, n, buf.length - n)) >= 0) {
+				n += read;
+			}
+			return n;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 
 	// if args[0] is '-', apply move-to-front encoding
 	// if args[0] is '+', apply move-to-front decoding
+	// if the system property codec.metrics is true, write metrics as a JSON
+	// line to standard error when done
 	public static void main(String[] args) {
 		if (args.length != 1) {
 			BinaryStdOut.write("Wrong argument! Must indicate encode (-) or decode (+)!");
 			return;
 		}
-		
+
+		CodecMetrics metrics = CodecMetrics.fromSystemProperty();
 		if (args[0].equals("-")) {
-			encode();
+			encode(metrics);
 		} else if (args[0].equals("+")) {
-			decode();
+			decode(metrics);
+		}
+
+		if (metrics != null) {
+			metrics.report();
 		}
 	}
 }
@@ -0,0 +1,146 @@
+/******************************************************************************
+ *  Compilation:  javac MoveToFrontBenchmark.java
+ *  Execution:    java MoveToFrontBenchmark [size in bytes] [rounds]
+ *  Dependencies: MoveToFront.java BurrowsWheeler.java
+ *
+ *  Compare the throughput of move-to-front encoding and decoding against the
+ *  original implementation, which scans the sequence for every character
+ *  and shifts it one element at a time. Inputs are the Burrows-Wheeler
+ *  transform of generated text, which is what move-to-front sees in practice,
+ *  and uniformly random bytes, which is its worst case.
+ *
+ ******************************************************************************/
+
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import edu.princeton.cs.algs4.Stopwatch;
+
+public class MoveToFrontBenchmark {
+	private static final int R = 256;
+
+	// Generate text made of words drawn from a small skewed vocabulary
+	static byte[] text(int size) {
+		String[] words = { "the", "of", "and", "to", "in", "block", "sort", "suffix",
+				"array", "transform", "ERROR", "INFO", "2024-01-01", "request", "id=" };
+		byte[] s = new byte[size];
+		int n = 0;
+		while (n < size) {
+			String w = words[Math.min(StdRandom.uniform(words.length), StdRandom.uniform(words.length))];
+			for (int i = 0; i < w.length() && n < size; i++) {
+				s[n++] = (byte) w.charAt(i);
+			}
+			if (n < size) {
+				s[n++] = (byte) (StdRandom.uniform(8) == 0 ? '\n' : ' ');
+			}
+		}
+		return s;
+	}
+
+	static byte[] random(int size) {
+		byte[] s = new byte[size];
+		for (int i = 0; i < size; i++) {
+			s[i] = (byte) StdRandom.uniform(R);
+		}
+		return s;
+	}
+
+	// The original encoder: linear scan, then shift one element at a time
+	private static void naiveEncode(byte[] in, int length, byte[] out) {
+		char[] ascii = new char[R];
+		for (char i = 0; i < R; i++) {
+			ascii[i] = i;
+		}
+
+		for (int k = 0; k < length; k++) {
+			char c = (char) (in[k] & 0xff);
+			for (char i = 0; i < R; i++) {
+				if (c == ascii[i]) {
+					out[k] = (byte) i;
+					for (char j = i; j >= 1; j--) {
+						ascii[j] = ascii[j - 1];
+					}
+					ascii[0] = c;
+					break;
+				}
+			}
+		}
+	}
+
+	// The original decoder: shift one element at a time
+	private static void naiveDecode(byte[] in, int length, byte[] out) {
+		char[] ascii = new char[R];
+		for (char i = 0; i < R; i++) {
+			ascii[i] = i;
+		}
+
+		for (int k = 0; k < length; k++) {
+			int pos = in[k] & 0xff;
+			char c = ascii[pos];
+			out[k] = (byte) c;
+			for (int i = pos; i >= 1; i--) {
+				ascii[i] = ascii[i - 1];
+			}
+			ascii[0] = c;
+		}
+	}
+
+	private static double megabytesPerSecond(long bytes, double seconds) {
+		return bytes / 1e6 / Math.max(seconds, 1e-3);
+	}
+
+	private static void run(String name, byte[] in, int rounds) {
+		int n = in.length;
+		byte[] naive = new byte[n];
+		byte[] fast = new byte[n];
+		byte[] back = new byte[n];
+
+		Stopwatch sw = new Stopwatch();
+		for (int r = 0; r < rounds; r++) {
+			naiveEncode(in, n, naive);
+		}
+		double naiveEnc = sw.elapsedTime();
+
+		sw = new Stopwatch();
+		for (int r = 0; r < rounds; r++) {
+			MoveToFront.encode(in, n, fast);
+		}
+		double fastEnc = sw.elapsedTime();
+
+		sw = new Stopwatch();
+		for (int r = 0; r < rounds; r++) {
+			naiveDecode(fast, n, back);
+		}
+		double naiveDec = sw.elapsedTime();
+
+		sw = new Stopwatch();
+		for (int r = 0; r < rounds; r++) {
+			MoveToFront.decode(fast, n, back);
+		}
+		double fastDec = sw.elapsedTime();
+
+		if (!Arrays.equals(naive, fast) || !Arrays.equals(in, back)) {
+			throw new IllegalStateException("Move-to-front mismatch on " + name);
+		}
+
+		long bytes = (long) n * rounds;
+		StdOut.printf("%-10s encode %8.1f MB/s (was %8.1f)   decode %8.1f MB/s (was %8.1f)\n", name,
+				megabytesPerSecond(bytes, fastEnc), megabytesPerSecond(bytes, naiveEnc),
+				megabytesPerSecond(bytes, fastDec), megabytesPerSecond(bytes, naiveDec));
+	}
+
+	public static void main(String[] args) {
+		int size = args.length >= 1 ? Integer.parseInt(args[0]) : 1 << 22;
+		int rounds = args.length >= 2 ? Integer.parseInt(args[1]) : 5;
+
+		byte[] text = text(size);
+		byte[] bwt = Arrays.copyOfRange(BurrowsWheeler.encode(text), 4, size + 4);
+
+		// Warm up both implementations before timing
+		run("warmup", random(1 << 16), 3);
+		run("bwt(text)", bwt, rounds);
+		run("text", text, rounds);
+		run("random", random(size), rounds);
+	}
+}
@@ -0,0 +1,103 @@
+// Move-to-front stage. Turns the runs of equal characters produced by the
+// Burrows-Wheeler transform into runs of zeros.
+// The list update rule is chosen per block: unless the stage is fixed to a
+// variant, each variant encodes a few evenly spaced samples of the block, and
+// the one whose output after zero-run coding has the lowest order-0 entropy
+// wins. The output is the variant as one byte, then the positions.
+public class MoveToFrontStage implements CodecStage {
+	private static final int SAMPLES = 4;
+	private static final int SAMPLE_SIZE = 1 << 14;
+
+	private final MoveToFront.Variant variant; // null to select per block
+	private final ZeroRunStage zeroRun = new ZeroRunStage();
+
+	public MoveToFrontStage() {
+		this.variant = null;
+	}
+
+	// stage that always uses the given variant
+	public MoveToFrontStage(MoveToFront.Variant variant) {
+		if (variant == null) {
+			throw new IllegalArgumentException("Null variant");
+		}
+		this.variant = variant;
+	}
+
+	public byte[] encode(byte[] in, int length) {
+		MoveToFront.Variant v = variant != null ? variant : select(in, length);
+		byte[] positions = new byte[length];
+		MoveToFront.encode(in, length, positions, v);
+
+		byte[] out = new byte[length + 1];
+		out[0] = (byte) v.ordinal();
+		System.arraycopy(positions, 0, out, 1, length);
+		return out;
+	}
+
+	public byte[] decode(byte[] in, int length) {
+		if (length < 1) {
+			throw new IllegalArgumentException("Missing move-to-front variant");
+		}
+		MoveToFront.Variant[] variants = MoveToFront.Variant.values();
+		int v = in[0] & 0xff;
+		if (v >= variants.length) {
+			throw new IllegalArgumentException("Unknown move-to-front variant " + v);
+		}
+
+		byte[] positions = new byte[length - 1];
+		System.arraycopy(in, 1, positions, 0, length - 1);
+		byte[] out = new byte[length - 1];
+		MoveToFront.decode(positions, length - 1, out, variants[v]);
+		return out;
+	}
+
+	// The variant with the smallest estimated output on samples of in
+	private MoveToFront.Variant select(byte[] in, int length) {
+		byte[] sample = sample(in, length);
+		byte[] positions = new byte[sample.length];
+		MoveToFront.Variant best = MoveToFront.Variant.MTF;
+		double bestBits = Double.MAX_VALUE;
+		for (MoveToFront.Variant v : MoveToFront.Variant.values()) {
+			MoveToFront.encode(sample, sample.length, positions, v);
+			byte[] runs = zeroRun.encode(positions, positions.length);
+			double bits = entropy(runs);
+			if (bits < bestBits) {
+				best = v;
+				bestBits = bits;
+			}
+		}
+		return best;
+	}
+
+	// The whole block if it is small, otherwise SAMPLES evenly spaced slices
+	// of SAMPLE_SIZE bytes put end to end
+	private static byte[] sample(byte[] in, int length) {
+		if (length <= SAMPLES * SAMPLE_SIZE) {
+			byte[] sample = new byte[length];
+			System.arraycopy(in, 0, sample, 0, length);
+			return sample;
+		}
+
+		byte[] sample = new byte[SAMPLES * SAMPLE_SIZE];
+		long stride = (length - SAMPLE_SIZE) / (SAMPLES - 1);
+		for (int k = 0; k < SAMPLES; k++) {
+			System.arraycopy(in, (int) (k * stride), sample, k * SAMPLE_SIZE, SAMPLE_SIZE);
+		}
+		return sample;
+	}
+
+	// Size in bits of b under an order-0 code for its own byte frequencies
+	private static double entropy(byte[] b) {
+		int[] count = new int[256];
+		for (int i = 0; i < b.length; i++) {
+			count[b[i] & 0xff]++;
+		}
+		double bits = 0;
+		for (int r = 0; r < 256; r++) {
+			if (count[r] > 0) {
+				bits -= count[r] * Math.log((double) count[r] / b.length);
+			}
+		}
+		return bits / Math.log(2);
+	}
+}
@@ -0,0 +1,185 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import edu.princeton.cs.algs4.BinaryStdOut;
+
+// Block-parallel Burrows-Wheeler compressor. The input is split into
+// independent blocks, and each block's Burrows-Wheeler transform and
+// move-to-front encoding run as a separate task on an executor. Results are
+// written in input order as (length, first, move-to-front encoded last column).
+public class ParallelBurrowsWheeler {
+	private static final int DEFAULT_BLOCK_SIZE = 900000;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final int blockSize;
+	private final ExecutorService executor;
+	private final int window; // maximum number of blocks in flight
+
+	public ParallelBurrowsWheeler(int blockSize) {
+		this(blockSize, ForkJoinPool.commonPool());
+	}
+
+	public ParallelBurrowsWheeler(int blockSize, ExecutorService executor) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Block size must be positive");
+		}
+		if (executor == null) {
+			throw new IllegalArgumentException("Null executor");
+		}
+
+		this.blockSize = blockSize;
+		this.executor = executor;
+		// Keep every worker busy while bounding memory to a few blocks per core
+		this.window = 2 * Runtime.getRuntime().availableProcessors();
+	}
+
+	// A transformed block ready to be written, or a decoded block
+	private static class Block {
+		private final int first;
+		private final byte[] data;
+
+		Block(int first, byte[] data) {
+			this.first = first;
+			this.data = data;
+		}
+	}
+
+	// read from standard input, compress blocks in parallel and write them to
+	// standard output in order. Blocks are read and written in bulk through
+	// buffered streams, so the main thread keeps up with the workers.
+	public void compress() {
+		Queue<Future<Block>> pending = new ArrayDeque<>();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out, BUFFER_SIZE));
+		try {
+			while (true) {
+				final byte[] block = new byte[blockSize];
+				final int length = BurrowsWheeler.readFully(System.in, block, blockSize);
+				if (length == 0) {
+					break;
+				}
+
+				pending.add(executor.submit(new Callable<Block>() {
+					public Block call() {
+						byte[] last = new byte[length];
+						int first = BurrowsWheeler.transform(block, length, last);
+						byte[] encoded = new byte[length];
+						MoveToFront.encode(last, length, encoded);
+						return new Block(first, encoded);
+					}
+				}));
+
+				if (pending.size() >= window) {
+					writeBlock(out, await(pending.remove()), true);
+				}
+			}
+
+			while (!pending.isEmpty()) {
+				writeBlock(out, await(pending.remove()), true);
+			}
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// read compressed blocks from standard input, decompress them in parallel
+	// and write them to standard output in order
+	public void decompress() {
+		Queue<Future<Block>> pending = new ArrayDeque<>();
+		InputStream in = new BufferedInputStream(System.in, BUFFER_SIZE);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out, BUFFER_SIZE));
+		byte[] header = new byte[8];
+		try {
+			int n;
+			while ((n = BurrowsWheeler.readFully(in, header, 8)) > 0) {
+				if (n < 8) {
+					throw new IllegalArgumentException("Truncated block header");
+				}
+				final int length = BurrowsWheeler.readInt(header, 0);
+				if (length < 0 || length > blockSize) {
+					throw new IllegalArgumentException("Block of " + length + " characters exceeds block size " + blockSize);
+				}
+				final int first = BurrowsWheeler.readInt(header, 4);
+				final byte[] encoded = new byte[length];
+				if (BurrowsWheeler.readFully(in, encoded, length) < length) {
+					throw new IllegalArgumentException("Truncated block of " + length + " characters");
+				}
+
+				pending.add(executor.submit(new Callable<Block>() {
+					public Block call() {
+						byte[] last = new byte[length];
+						MoveToFront.decode(encoded, length, last);
+						return new Block(first, BurrowsWheeler.inverse(first, last, length));
+					}
+				}));
+
+				if (pending.size() >= window) {
+					writeBlock(out, await(pending.remove()), false);
+				}
+			}
+
+			while (!pending.isEmpty()) {
+				writeBlock(out, await(pending.remove()), false);
+			}
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static Block await(Future<Block> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a block", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to process a block", e.getCause());
+		}
+	}
+
+	private static void writeBlock(DataOutputStream out, Block block, boolean header) throws IOException {
+		if (header) {
+			out.writeInt(block.data.length);
+			out.writeInt(block.first);
+		}
+		out.write(block.data);
+	}
+
+	// if args[0] is '-', compress; if args[0] is '+', decompress
+	// optional args[1] is the block size, optional args[2] the number of threads
+	public static void main(String[] args) {
+		if (args.length < 1 || args.length > 3) {
+			BinaryStdOut.write("Wrong argument! Must indicate compress (-) or decompress (+)!");
+			return;
+		}
+
+		int blockSize = args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_BLOCK_SIZE;
+		ExecutorService executor = args.length == 3
+				? new ForkJoinPool(Integer.parseInt(args[2]))
+				: ForkJoinPool.commonPool();
+		ParallelBurrowsWheeler pbw = new ParallelBurrowsWheeler(blockSize, executor);
+		try {
+			if (args[0].equals("-")) {
+				pbw.compress();
+			} else if (args[0].equals("+")) {
+				pbw.decompress();
+			}
+		} finally {
+			if (executor != ForkJoinPool.commonPool()) {
+				executor.shutdown();
+			}
+		}
+	}
+}
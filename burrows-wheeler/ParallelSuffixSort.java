@@ -0,0 +1,191 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+// Parallel sort of the circular suffixes of a byte text. An MSD radix pass
+// distributes the suffixes into buckets by their first two bytes, then
+// groups of buckets are sorted independently on a fork/join pool with
+// three-way radix quicksort, starting from the third byte.
+// Three-way radix quicksort is fast when suffixes are told apart by short
+// prefixes, as in most text, but quadratic on long repeats. Each task
+// therefore gets a budget of byte comparisons proportional to its share of
+// the text; once any task runs out, the sort gives up and returns null so
+// that the caller can fall back to induced sorting.
+final class ParallelSuffixSort {
+	private static final int R = 256;
+	private static final int CUTOFF = 16;        // cutoff to insertion sort
+	private static final int TASKS_PER_THREAD = 8;
+	private static final int BUDGET = 64;        // byte comparisons per suffix
+
+	private final byte[] text;
+	private final int length;
+	private final int[] sa;
+	private final LongAdder comparisons = new LongAdder();
+	private volatile boolean exhausted;
+
+	// sorter of the circular suffixes of the first length bytes of text
+	ParallelSuffixSort(byte[] text, int length) {
+		this.text = text;
+		this.length = length;
+		this.sa = new int[length];
+	}
+
+	// Sorted offsets of the circular suffixes, or null if the text is too
+	// repetitive for this strategy
+	int[] sort(ForkJoinPool pool) {
+		if (length == 0) {
+			return sa;
+		}
+
+		int[] bucket = distribute();
+		int share = Math.max(length / (pool.getParallelism() * TASKS_PER_THREAD), CUTOFF);
+		pool.invoke(new Buckets(bucket, 0, R * R, share));
+		return exhausted ? null : sa;
+	}
+
+	// number of byte comparisons made by sort, including those of tasks
+	// that gave up
+	long comparisons() {
+		return comparisons.sum();
+	}
+
+	// Key-indexed counting on the first two bytes. Returns the start of every
+	// bucket in sa, followed by length.
+	private int[] distribute() {
+		int[] count = new int[R * R + 1];
+		for (int i = 0; i < length; i++) {
+			count[key(i) + 1]++;
+		}
+		for (int r = 0; r < R * R; r++) {
+			count[r + 1] += count[r];
+		}
+		int[] next = count.clone();
+		for (int i = 0; i < length; i++) {
+			sa[next[key(i)]++] = i;
+		}
+		return count;
+	}
+
+	private int key(int i) {
+		int j = i + 1 < length ? i + 1 : 0;
+		return (text[i] & 0xff) << 8 | (text[j] & 0xff);
+	}
+
+	// byte d of the suffix starting at offset i, for 0 <= d < length
+	private int charAt(int i, int d) {
+		int j = i + d;
+		return text[j < length ? j : j - length] & 0xff;
+	}
+
+	// Sorts the buckets in [lo, hi), splitting the range in half while it
+	// holds more than its share of suffixes and more than one bucket
+	private class Buckets extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] bucket;
+		private final int lo;
+		private final int hi;
+		private final int share;
+
+		Buckets(int[] bucket, int lo, int hi, int share) {
+			this.bucket = bucket;
+			this.lo = lo;
+			this.hi = hi;
+			this.share = share;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > 1 && bucket[hi] - bucket[lo] > share) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new Buckets(bucket, lo, mid, share), new Buckets(bucket, mid, hi, share));
+				return;
+			}
+
+			long budget = (long) BUDGET * (bucket[hi] - bucket[lo]) + length;
+			Sorter sorter = new Sorter(budget);
+			for (int b = lo; b < hi && !exhausted; b++) {
+				sorter.sort(bucket[b], bucket[b + 1] - 1, 2);
+			}
+			comparisons.add(budget - sorter.budget);
+		}
+	}
+
+	// Three-way radix quicksort of sa[lo..hi] by the suffixes from byte d on,
+	// the first d bytes being equal, charged to a comparison budget
+	private class Sorter {
+		private long budget;
+
+		Sorter(long budget) {
+			this.budget = budget;
+		}
+
+		private boolean spend(long work) {
+			budget -= work;
+			if (budget < 0) {
+				exhausted = true;
+			}
+			return !exhausted;
+		}
+
+		void sort(int lo, int hi, int d) {
+			while (hi > lo && d < length) {
+				if (!spend(hi - lo + 1)) {
+					return;
+				}
+				if (hi - lo < CUTOFF) {
+					insertion(lo, hi, d);
+					return;
+				}
+
+				int lt = lo;
+				int gt = hi;
+				int v = charAt(sa[lo + (hi - lo) / 2], d);
+				int i = lo;
+				while (i <= gt) {
+					int t = charAt(sa[i], d);
+					if (t < v) {
+						exch(lt++, i++);
+					} else if (t > v) {
+						exch(i, gt--);
+					} else {
+						i++;
+					}
+				}
+
+				// Recurse on the outer parts and loop on the middle one, which
+				// moves on to the next byte
+				sort(lo, lt - 1, d);
+				sort(gt + 1, hi, d);
+				lo = lt;
+				hi = gt;
+				d++;
+			}
+		}
+
+		private void insertion(int lo, int hi, int d) {
+			for (int i = lo + 1; i <= hi; i++) {
+				for (int j = i; j > lo && less(sa[j], sa[j - 1], d); j--) {
+					exch(j, j - 1);
+				}
+			}
+		}
+
+		// Is the suffix at offset i less than the one at offset j, both
+		// starting with the same d bytes
+		private boolean less(int i, int j, int d) {
+			int k = d;
+			while (k < length && k - d <= budget && charAt(i, k) == charAt(j, k)) {
+				k++;
+			}
+			spend(k - d + 1);
+			return k < length && charAt(i, k) < charAt(j, k);
+		}
+
+		private void exch(int i, int j) {
+			int swap = sa[i];
+			sa[i] = sa[j];
+			sa[j] = swap;
+		}
+	}
+}
@@ -0,0 +1,215 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Run-length Burrows-Wheeler transform. The last column of a repetitive text
+// is made of few long runs of equal characters, so it is kept as r runs, each
+// a character and a length, rather than as n bytes. The inverse works on the
+// runs directly: for row i in run k, the LF mapping is
+//     C[c] + (number of c in the runs before k) + (i - start of run k)
+// where c is the character of run k, so with the start of every run and the
+// count of its character in the runs before it, a step costs one binary
+// search over the runs. Space is proportional to r instead of n.
+// The serialized form is the length n, the index of the original message
+// and the number of runs r as 4 bytes each, then every run as its character
+// followed by its length minus one as a varint (7 bits per byte, low bits
+// first).
+public class RunLengthBurrowsWheeler {
+	private static final int R = 256;
+
+	private final int length;
+	private final int first;     // row of the original message
+	private final byte[] head;   // head[k] is the character of run k
+	private final int[] start;   // start[k] is the first row of run k, start[r] is length
+	private final int[] before;  // before[k] is the number of head[k] in runs 0 to k - 1
+	private final int[] c;       // c[x] is the number of characters less than x
+
+	private RunLengthBurrowsWheeler(int length, int first, byte[] head, int[] start) {
+		if (length > 0 && (first < 0 || first >= length)) {
+			throw new IllegalArgumentException("Index of the original message out of range: " + first);
+		}
+
+		this.length = length;
+		this.first = first;
+		this.head = head;
+		this.start = start;
+		int runs = head.length;
+		before = new int[runs];
+		int[] count = new int[R];
+		for (int k = 0; k < runs; k++) {
+			int x = head[k] & 0xff;
+			before[k] = count[x];
+			count[x] += start[k + 1] - start[k];
+		}
+		c = new int[R + 1];
+		for (int x = 0; x < R; x++) {
+			c[x + 1] = c[x] + count[x];
+		}
+	}
+
+	// run-length transform of text
+	public static RunLengthBurrowsWheeler of(byte[] text) {
+		if (text == null) {
+			throw new IllegalArgumentException("Null argument");
+		}
+
+		byte[] last = new byte[text.length];
+		int first = BurrowsWheeler.transform(text, text.length, last);
+		return fromLastColumn(first, last, last.length);
+	}
+
+	// run-length form of the output of BurrowsWheeler.encode
+	public static RunLengthBurrowsWheeler fromEncoded(byte[] encoded) {
+		if (encoded == null || encoded.length < 4) {
+			throw new IllegalArgumentException("Missing index of the original message");
+		}
+
+		byte[] last = Arrays.copyOfRange(encoded, 4, encoded.length);
+		return fromLastColumn(BurrowsWheeler.readInt(encoded, 0), last, last.length);
+	}
+
+	private static RunLengthBurrowsWheeler fromLastColumn(int first, byte[] last, int length) {
+		int runs = 0;
+		for (int i = 0; i < length; i++) {
+			if (i == 0 || last[i] != last[i - 1]) {
+				runs++;
+			}
+		}
+
+		byte[] head = new byte[runs];
+		int[] start = new int[runs + 1];
+		int k = 0;
+		for (int i = 0; i < length; i++) {
+			if (i == 0 || last[i] != last[i - 1]) {
+				head[k] = last[i];
+				start[k++] = i;
+			}
+		}
+		start[runs] = length;
+		return new RunLengthBurrowsWheeler(length, first, head, start);
+	}
+
+	// the serialized form written by toBytes
+	public static RunLengthBurrowsWheeler fromBytes(byte[] b) {
+		if (b == null || b.length < 12) {
+			throw new IllegalArgumentException("Truncated run-length transform");
+		}
+
+		int length = BurrowsWheeler.readInt(b, 0);
+		int first = BurrowsWheeler.readInt(b, 4);
+		int runs = BurrowsWheeler.readInt(b, 8);
+		if (length < 0 || runs < 0 || runs > length || runs > b.length - 12) {
+			throw new IllegalArgumentException("Malformed run-length transform");
+		}
+
+		byte[] head = new byte[runs];
+		int[] start = new int[runs + 1];
+		int pos = 12;
+		for (int k = 0; k < runs; k++) {
+			if (pos >= b.length) {
+				throw new IllegalArgumentException("Truncated run-length transform");
+			}
+			head[k] = b[pos++];
+			long run = 0;
+			int shift = 0;
+			int v;
+			do {
+				if (pos >= b.length || shift > 28) {
+					throw new IllegalArgumentException("Malformed run length");
+				}
+				v = b[pos++] & 0xff;
+				run |= (long) (v & 0x7f) << shift;
+				shift += 7;
+			} while ((v & 0x80) != 0);
+			if (start[k] + run + 1 > length) {
+				throw new IllegalArgumentException("Runs exceed the length of the text");
+			}
+			start[k + 1] = start[k] + (int) run + 1;
+		}
+		if (start[runs] != length) {
+			throw new IllegalArgumentException("Runs do not cover the length of the text");
+		}
+		return new RunLengthBurrowsWheeler(length, first, head, start);
+	}
+
+	// serialized form: length, first, number of runs, then the runs
+	public byte[] toBytes() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(12 + 2 * head.length);
+		byte[] header = new byte[12];
+		BurrowsWheeler.writeInt(header, 0, length);
+		BurrowsWheeler.writeInt(header, 4, first);
+		BurrowsWheeler.writeInt(header, 8, head.length);
+		out.write(header, 0, 12);
+		for (int k = 0; k < head.length; k++) {
+			out.write(head[k]);
+			int rest = start[k + 1] - start[k] - 1;
+			while (rest >= 0x80) {
+				out.write((rest & 0x7f) | 0x80);
+				rest >>>= 7;
+			}
+			out.write(rest);
+		}
+		return out.toByteArray();
+	}
+
+	// length of the text
+	public int length() {
+		return length;
+	}
+
+	// number of runs in the last column
+	public int runs() {
+		return head.length;
+	}
+
+	// Reconstruct the text backwards from the last row: the character of the
+	// row of the original message in the last column is the last character of
+	// the text, and each LF step moves to the row of the previous offset.
+	public byte[] inverse() {
+		byte[] text = new byte[length];
+		int row = first;
+		int k = run(row);
+		for (int i = length - 1; i >= 0; i--) {
+			int x = head[k] & 0xff;
+			text[i] = head[k];
+			row = c[x] + before[k] + row - start[k];
+			if (i > 0) {
+				k = run(row);
+			}
+		}
+		return text;
+	}
+
+	// the run that holds row
+	private int run(int row) {
+		int k = Arrays.binarySearch(start, 0, head.length, row);
+		return k >= 0 ? k : -k - 2;
+	}
+
+	// if args[0] is '-', write the run-length transform of standard input
+	// if args[0] is '+', invert a run-length transform read from standard input
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Wrong argument! Must indicate encode (-) or decode (+)!");
+			return;
+		}
+
+		byte[] in = readAll();
+		if (args[0].equals("-")) {
+			System.out.write(of(in).toBytes());
+		} else if (args[0].equals("+")) {
+			System.out.write(fromBytes(in).inverse());
+		}
+		System.out.flush();
+	}
+
+	private static byte[] readAll() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[1 << 16];
+		int n;
+		while ((n = System.in.read(buf)) >= 0) {
+			out.write(buf, 0, n);
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,65 @@
+/******************************************************************************
+ *  Compilation:  javac SuffixSortBenchmark.java
+ *  Execution:    java SuffixSortBenchmark [size in bytes] [rounds]
+ *  Dependencies: CircularSuffixArray.java ParallelSuffixSort.java
+ *                MoveToFrontBenchmark.java BurrowsWheelerBenchmark.java
+ *
+ *  Compare circular suffix array construction by induced sorting with the
+ *  parallel radix sort strategy on generated text, random bytes and a
+ *  periodic input, which makes the parallel strategy fall back to induced
+ *  sorting. Each result is the best of the given number of rounds, after a
+ *  warm-up round.
+ *
+ ******************************************************************************/
+
+import java.util.concurrent.ForkJoinPool;
+
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+
+public class SuffixSortBenchmark {
+
+	private static double time(byte[] in, CircularSuffixArray.Strategy strategy, int rounds) {
+		double best = Double.MAX_VALUE;
+		for (int r = 0; r <= rounds; r++) {
+			Stopwatch sw = new Stopwatch();
+			new CircularSuffixArray(in, in.length, strategy);
+			double t = sw.elapsedTime();
+			// The first round only warms up the JIT
+			if (r > 0) {
+				best = Math.min(best, t);
+			}
+		}
+		return best;
+	}
+
+	private static void run(String name, byte[] in, int rounds) {
+		CircularSuffixArray induced = new CircularSuffixArray(in, in.length,
+				CircularSuffixArray.Strategy.INDUCED_SORTING);
+		CircularSuffixArray radix = new CircularSuffixArray(in, in.length,
+				CircularSuffixArray.Strategy.PARALLEL_RADIX);
+		// Equal rotations may come in any order, so compare the last columns
+		for (int i = 0; i < in.length; i++) {
+			int p = (induced.index(i) + in.length - 1) % in.length;
+			int q = (radix.index(i) + in.length - 1) % in.length;
+			if (in[p] != in[q]) {
+				throw new IllegalStateException("Strategies disagree on " + name);
+			}
+		}
+
+		double t1 = time(in, CircularSuffixArray.Strategy.INDUCED_SORTING, rounds);
+		double t2 = time(in, CircularSuffixArray.Strategy.PARALLEL_RADIX, rounds);
+		StdOut.printf("%-10s induced sorting %8.3f s   parallel radix %8.3f s   speedup %5.2fx\n",
+				name, t1, t2, t1 / Math.max(t2, 1e-3));
+	}
+
+	public static void main(String[] args) {
+		int size = args.length >= 1 ? Integer.parseInt(args[0]) : 1 << 22;
+		int rounds = args.length >= 2 ? Integer.parseInt(args[1]) : 3;
+
+		StdOut.println(size + " bytes, " + ForkJoinPool.commonPool().getParallelism() + " worker threads");
+		run("text", MoveToFrontBenchmark.text(size), rounds);
+		run("random", MoveToFrontBenchmark.random(size), rounds);
+		run("periodic", BurrowsWheelerBenchmark.periodic(size), rounds);
+	}
+}
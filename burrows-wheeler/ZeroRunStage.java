@@ -0,0 +1,93 @@
+import java.io.ByteArrayOutputStream;
+
+// Zero-run length encoding stage. The output is the input length as 4 bytes,
+// then the input with non-zero bytes copied as they are, and each run of
+// zeros written as a single zero followed by the run length minus one as a
+// varint (7 bits per byte, low bits first). Move-to-front output is dominated
+// by zeros, so this shrinks the input of the entropy stage considerably.
+// Decoding checks every run against the stored length, so a corrupt block is
+// rejected instead of growing without bound.
+public class ZeroRunStage implements CodecStage {
+	private static final int HEADER = 4;
+	private static final int MAX_VARINT = 5; // bytes of a varint of up to 31 bits
+
+	public byte[] encode(byte[] in, int length) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 16);
+		byte[] header = new byte[HEADER];
+		BurrowsWheeler.writeInt(header, 0, length);
+		out.write(header, 0, HEADER);
+		int i = 0;
+		while (i < length) {
+			if (in[i] != 0) {
+				out.write(in[i++]);
+				continue;
+			}
+
+			int run = 0;
+			while (i < length && in[i] == 0) {
+				run++;
+				i++;
+			}
+			out.write(0);
+			int rest = run - 1;
+			while (rest >= 0x80) {
+				out.write((rest & 0x7f) | 0x80);
+				rest >>>= 7;
+			}
+			out.write(rest);
+		}
+		return out.toByteArray();
+	}
+
+	public byte[] decode(byte[] in, int length) {
+		if (length < HEADER) {
+			throw new IllegalArgumentException("Missing zero-run header");
+		}
+		int expected = BurrowsWheeler.readInt(in, 0);
+		if (expected < 0) {
+			throw new IllegalArgumentException("Malformed zero-run length " + expected);
+		}
+
+		byte[] out = new byte[expected];
+		int n = 0;
+		int i = HEADER;
+		while (i < length) {
+			if (n >= expected) {
+				throw new IllegalArgumentException("Zero-run block longer than " + expected + " bytes");
+			}
+			if (in[i] != 0) {
+				out[n++] = in[i++];
+				continue;
+			}
+
+			i++;
+			int run = 0;
+			int shift = 0;
+			for (int k = 0; ; k++) {
+				if (i >= length || k == MAX_VARINT) {
+					throw new IllegalArgumentException("Malformed zero run");
+				}
+				int b = in[i++] & 0xff;
+				run |= (b & 0x7f) << shift;
+				if (k == MAX_VARINT - 1 && b >= 1 << (31 - shift)) {
+					// bits past the 31 of a non-negative int
+					throw new IllegalArgumentException("Malformed zero run");
+				}
+				shift += 7;
+				if (b < 0x80) {
+					break;
+				}
+			}
+			// the run is run + 1 zeros, already in place in out
+			if (run >= expected - n) {
+				throw new IllegalArgumentException("Zero run of " + (run + 1L) + " bytes exceeds the "
+						+ (expected - n) + " left in the block");
+			}
+			n += run + 1;
+		}
+		if (n != expected) {
+			throw new IllegalArgumentException("Zero-run block of " + n + " bytes instead of " + expected);
+		}
+		return out;
+	}
+}
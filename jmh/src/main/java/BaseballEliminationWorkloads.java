@@ -0,0 +1,81 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import benchmarks.Workload;
+import edu.princeton.cs.algs4.StdRandom;
+
+// Workloads of the baseball elimination assignment: isEliminated for the
+// teams of a division in turn. The input is a division file, or
+// "generated" for a generated division of size teams, who play a random
+// number of remaining games against each other and have random wins, so
+// that some are eliminated trivially, some only through a max-flow
+// certificate and some not at all.
+public class BaseballEliminationWorkloads {
+	public static Workload create(String operation, String input, int size) {
+		StdRandom.setSeed(size);
+		String file = input;
+		if (input.equals("generated")) {
+			try {
+				file = generate(size);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		if (operation.equals("isEliminated")) {
+			final BaseballElimination division = new BaseballElimination(file);
+			final ArrayList<String> teams = new ArrayList<>();
+			for (String team : division.teams()) {
+				teams.add(team);
+			}
+			return new Workload() {
+				private int next;
+
+				@Override
+				public void run(Blackhole bh) {
+					bh.consume(division.isEliminated(teams.get(next)));
+					next = next + 1 < teams.size() ? next + 1 : 0;
+				}
+			};
+		}
+		throw new IllegalArgumentException("Unknown operation: " + operation);
+	}
+
+	// Write a division with the given number of teams in the input format of
+	// BaseballElimination, returning the file name
+	private static String generate(int teams) throws IOException {
+		int[][] games = new int[teams][teams];
+		for (int i = 0; i < teams; i++) {
+			for (int j = i + 1; j < teams; j++) {
+				games[i][j] = StdRandom.uniform(3);
+				games[j][i] = games[i][j];
+			}
+		}
+
+		File file = File.createTempFile("division", ".txt");
+		file.deleteOnExit();
+		try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+			out.println(teams);
+			for (int i = 0; i < teams; i++) {
+				int remaining = 0;
+				for (int j = 0; j < teams; j++) {
+					remaining += games[i][j];
+				}
+				int wins = 60 + StdRandom.uniform(30);
+				int losses = 162 - wins - remaining;
+				StringBuilder line = new StringBuilder("Team" + i);
+				line.append(' ').append(wins).append(' ').append(Math.max(losses, 0)).append(' ').append(remaining);
+				for (int j = 0; j < teams; j++) {
+					line.append(' ').append(games[i][j]);
+				}
+				out.println(line);
+			}
+		}
+		return file.getPath();
+	}
+}
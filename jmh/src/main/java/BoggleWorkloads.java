@@ -0,0 +1,99 @@
+import java.util.HashSet;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import benchmarks.Workload;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdRandom;
+
+// Workloads of the Boggle assignment: BoggleSolver.getAllValidWords on
+// random Hasbro boards. The input is a dictionary file, or "generated" for
+// a generated dictionary of size words. Each run solves one board, cycling
+// through BOARDS prepared boards.
+public class BoggleWorkloads {
+	private static final int BOARDS = 256;
+
+	public static Workload create(String operation, String input, int size) {
+		StdRandom.setSeed(size);
+		String[] dictionary;
+		if (input.equals("generated")) {
+			dictionary = generate(size);
+		} else {
+			dictionary = new In(input).readAllStrings();
+		}
+
+		if (operation.equals("getAllValidWords")) {
+			final BoggleSolver solver = new BoggleSolver(dictionary);
+			final BoggleBoard[] boards = new BoggleBoard[BOARDS];
+			for (int i = 0; i < BOARDS; i++) {
+				boards[i] = new BoggleBoard();
+			}
+			return new Workload() {
+				private int next;
+
+				@Override
+				public void run(Blackhole bh) {
+					bh.consume(solver.getAllValidWords(boards[next++ & (BOARDS - 1)]));
+				}
+			};
+		}
+		throw new IllegalArgumentException("Unknown operation: " + operation);
+	}
+
+	// Trace a random path of the given length that does not reuse a die
+	private static String randomPath(BoggleBoard board, int length) {
+		boolean[][] used = new boolean[board.rows()][board.cols()];
+		int i = StdRandom.uniform(board.rows());
+		int j = StdRandom.uniform(board.cols());
+		StringBuilder word = new StringBuilder();
+		for (int k = 0; k < length; k++) {
+			used[i][j] = true;
+			char c = board.getLetter(i, j);
+			word.append(c == 'Q' ? "QU" : String.valueOf(c));
+
+			// Step to a random unused neighbor, if any
+			int ni = -1;
+			int nj = -1;
+			int seen = 0;
+			for (int di = -1; di <= 1; di++) {
+				for (int dj = -1; dj <= 1; dj++) {
+					int a = i + di;
+					int b = j + dj;
+					if (a >= 0 && a < board.rows() && b >= 0 && b < board.cols() && !used[a][b]) {
+						seen++;
+						if (StdRandom.uniform(seen) == 0) {
+							ni = a;
+							nj = b;
+						}
+					}
+				}
+			}
+			if (ni < 0) {
+				break;
+			}
+			i = ni;
+			j = nj;
+		}
+		return word.toString();
+	}
+
+	// A dictionary of size words, half traced along random paths of random
+	// boards so that a fair share of the lookups succeed, half random
+	// letter strings
+	private static String[] generate(int size) {
+		HashSet<String> words = new HashSet<>();
+		while (words.size() < size) {
+			if (StdRandom.uniform(2) == 0) {
+				words.add(randomPath(new BoggleBoard(), 3 + StdRandom.uniform(6)));
+			} else {
+				StringBuilder word = new StringBuilder();
+				int length = 3 + StdRandom.uniform(8);
+				for (int k = 0; k < length; k++) {
+					word.append((char) ('A' + StdRandom.uniform(26)));
+				}
+				words.add(word.toString());
+			}
+		}
+		return words.toArray(new String[0]);
+	}
+}
@@ -0,0 +1,69 @@
+import org.openjdk.jmh.infra.Blackhole;
+
+import benchmarks.Workload;
+import edu.princeton.cs.algs4.StdRandom;
+
+// Workloads of the Burrows-Wheeler assignment: suffix sorting, the transform
+// and its inverse, and move-to-front, on the inputs of BurrowsWheelerBenchmark
+// ("text", "random" or "periodic") of size bytes
+public class BurrowsWheelerWorkloads {
+	public static Workload create(String operation, String input, int size) {
+		StdRandom.setSeed(size);
+		final byte[] in;
+		if (input.equals("text")) {
+			in = MoveToFrontBenchmark.text(size);
+		} else if (input.equals("random")) {
+			in = MoveToFrontBenchmark.random(size);
+		} else if (input.equals("periodic")) {
+			in = BurrowsWheelerBenchmark.periodic(size);
+		} else {
+			throw new IllegalArgumentException("Unknown input: " + input);
+		}
+		final int n = in.length;
+
+		if (operation.equals("suffixArray")) {
+			return new Workload() {
+				@Override
+				public void run(Blackhole bh) {
+					bh.consume(new CircularSuffixArray(in, n));
+				}
+			};
+		} else if (operation.equals("transform")) {
+			return new Workload() {
+				@Override
+				public void run(Blackhole bh) {
+					bh.consume(BurrowsWheeler.encode(in));
+				}
+			};
+		} else if (operation.equals("inverseTransform")) {
+			final byte[] encoded = BurrowsWheeler.encode(in);
+			return new Workload() {
+				@Override
+				public void run(Blackhole bh) {
+					bh.consume(BurrowsWheeler.decode(encoded));
+				}
+			};
+		} else if (operation.equals("moveToFrontEncode")) {
+			final byte[] out = new byte[n];
+			return new Workload() {
+				@Override
+				public void run(Blackhole bh) {
+					MoveToFront.encode(in, n, out);
+					bh.consume(out);
+				}
+			};
+		} else if (operation.equals("moveToFrontDecode")) {
+			final byte[] positions = new byte[n];
+			final byte[] out = new byte[n];
+			MoveToFront.encode(in, n, positions);
+			return new Workload() {
+				@Override
+				public void run(Blackhole bh) {
+					MoveToFront.decode(positions, n, out);
+					bh.consume(out);
+				}
+			};
+		}
+		throw new IllegalArgumentException("Unknown operation: " + operation);
+	}
+}
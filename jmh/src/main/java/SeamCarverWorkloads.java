@@ -0,0 +1,90 @@
+import org.openjdk.jmh.infra.Blackhole;
+
+import benchmarks.Workload;
+import edu.princeton.cs.algs4.Picture;
+import edu.princeton.cs.algs4.StdRandom;
+
+// Workloads of the seam carving assignment: finding and removing vertical
+// and horizontal seams. The input is an image file, or "generated" for the
+// generated picture size pixels wide and 4/5 as high. Removing a seam
+// changes the picture, so those workloads start each run from a fresh
+// SeamCarver and seam, prepared by reset().
+public class SeamCarverWorkloads {
+	public static Workload create(String operation, String input, int size) {
+		StdRandom.setSeed(size);
+		final Picture picture;
+		if (input.equals("generated")) {
+			picture = generate(size, size * 4 / 5);
+		} else {
+			picture = new Picture(input);
+		}
+
+		if (operation.equals("findVerticalSeam")) {
+			final SeamCarver carver = new SeamCarver(picture);
+			return new Workload() {
+				@Override
+				public void run(Blackhole bh) {
+					bh.consume(carver.findVerticalSeam());
+				}
+			};
+		} else if (operation.equals("findHorizontalSeam")) {
+			final SeamCarver carver = new SeamCarver(picture);
+			return new Workload() {
+				@Override
+				public void run(Blackhole bh) {
+					bh.consume(carver.findHorizontalSeam());
+				}
+			};
+		} else if (operation.equals("removeVerticalSeam")) {
+			return new Workload() {
+				private SeamCarver carver;
+				private int[] seam;
+
+				@Override
+				public void reset() {
+					carver = new SeamCarver(picture);
+					seam = carver.findVerticalSeam();
+				}
+
+				@Override
+				public void run(Blackhole bh) {
+					carver.removeVerticalSeam(seam);
+					bh.consume(carver);
+				}
+			};
+		} else if (operation.equals("removeHorizontalSeam")) {
+			return new Workload() {
+				private SeamCarver carver;
+				private int[] seam;
+
+				@Override
+				public void reset() {
+					carver = new SeamCarver(picture);
+					seam = carver.findHorizontalSeam();
+				}
+
+				@Override
+				public void run(Blackhole bh) {
+					carver.removeHorizontalSeam(seam);
+					bh.consume(carver);
+				}
+			};
+		}
+		throw new IllegalArgumentException("Unknown operation: " + operation);
+	}
+
+	// A picture of smooth color gradients with random noise, so that the
+	// energy is neither uniform nor random
+	private static Picture generate(int width, int height) {
+		Picture picture = new Picture(width, height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int red = (255 * x / width + StdRandom.uniform(16)) & 0xFF;
+				int green = (255 * y / height + StdRandom.uniform(16)) & 0xFF;
+				int blue = ((x * y) % 256 + StdRandom.uniform(16)) & 0xFF;
+				picture.setRGB(x, y, (red << 16) | (green << 8) | blue);
+			}
+		}
+		return picture;
+	}
+}
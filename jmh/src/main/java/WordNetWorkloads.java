@@ -0,0 +1,141 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import benchmarks.Workload;
+import edu.princeton.cs.algs4.Digraph;
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdRandom;
+
+// Workloads of the WordNet assignment: SAP.length on random synset pairs
+// and WordNet.distance on random noun pairs, on a generated WordNet with
+// size synsets: a rooted DAG shaped like WordNet, where every synset has one
+// or two hypernyms among the older synsets and some nouns appear in several
+// synsets. The input is the SAP mode, "bfs" or "indexed" (with the ancestor
+// index). Each run answers one query, cycling through QUERIES prepared pairs.
+public class WordNetWorkloads {
+	private static final int QUERIES = 1024;
+
+	public static Workload create(String operation, String input, int size) {
+		final boolean indexed;
+		if (input.equals("bfs")) {
+			indexed = false;
+		} else if (input.equals("indexed")) {
+			indexed = true;
+		} else {
+			throw new IllegalArgumentException("Unknown input: " + input);
+		}
+
+		StdRandom.setSeed(size);
+		String[] files;
+		try {
+			files = generate(size);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		if (operation.equals("sapLength")) {
+			Digraph graph = readGraph(files[0], files[1]);
+			final SAP sap = new SAP(graph, indexed);
+			final int[] v = new int[QUERIES];
+			final int[] w = new int[QUERIES];
+			for (int i = 0; i < QUERIES; i++) {
+				v[i] = StdRandom.uniform(graph.V());
+				w[i] = StdRandom.uniform(graph.V());
+			}
+			return new Workload() {
+				private int next;
+
+				@Override
+				public void run(Blackhole bh) {
+					int i = next++ & (QUERIES - 1);
+					bh.consume(sap.length(v[i], w[i]));
+				}
+			};
+		} else if (operation.equals("distance")) {
+			final WordNet wordnet = new WordNet(files[0], files[1], indexed);
+			ArrayList<String> nouns = new ArrayList<>();
+			for (String noun : wordnet.nouns()) {
+				nouns.add(noun);
+			}
+			final String[] a = new String[QUERIES];
+			final String[] b = new String[QUERIES];
+			for (int i = 0; i < QUERIES; i++) {
+				a[i] = nouns.get(StdRandom.uniform(nouns.size()));
+				b[i] = nouns.get(StdRandom.uniform(nouns.size()));
+			}
+			return new Workload() {
+				private int next;
+
+				@Override
+				public void run(Blackhole bh) {
+					int i = next++ & (QUERIES - 1);
+					bh.consume(wordnet.distance(a[i], b[i]));
+				}
+			};
+		}
+		throw new IllegalArgumentException("Unknown operation: " + operation);
+	}
+
+	// Write a generated WordNet with the given number of synsets, returning
+	// the synsets and hypernyms file names
+	private static String[] generate(int vertices) throws IOException {
+		File synsets = File.createTempFile("synsets", ".txt");
+		File hypernyms = File.createTempFile("hypernyms", ".txt");
+		synsets.deleteOnExit();
+		hypernyms.deleteOnExit();
+
+		try (PrintWriter syn = new PrintWriter(synsets, "UTF-8");
+				PrintWriter hyp = new PrintWriter(hypernyms, "UTF-8")) {
+			for (int v = 0; v < vertices; v++) {
+				String nouns = "noun_" + v;
+				if (v > 0 && StdRandom.uniform(10) == 0) {
+					// A noun shared with an older synset
+					nouns += " noun_" + StdRandom.uniform(v);
+				}
+				syn.println(v + "," + nouns + ",gloss of synset " + v);
+
+				if (v > 0) {
+					// A uniformly random older hypernym gives a DAG about as
+					// deep as the real WordNet (around 20 levels for 80000
+					// synsets) with a few dozen ancestors per synset
+					int parent = StdRandom.uniform(v);
+					String line = v + "," + parent;
+					if (v > 1 && StdRandom.uniform(20) == 0) {
+						int other = StdRandom.uniform(v);
+						if (other != parent) {
+							line += "," + other;
+						}
+					}
+					hyp.println(line);
+				}
+			}
+		}
+		return new String[] { synsets.getPath(), hypernyms.getPath() };
+	}
+
+	// The hypernym digraph of the given WordNet files
+	private static Digraph readGraph(String synsets, String hypernyms) {
+		int vertices = 0;
+		In syn = new In(synsets);
+		while (syn.hasNextLine()) {
+			syn.readLine();
+			vertices++;
+		}
+
+		Digraph graph = new Digraph(vertices);
+		In hyp = new In(hypernyms);
+		while (hyp.hasNextLine()) {
+			String[] items = hyp.readLine().split(",");
+			int id = Integer.parseInt(items[0]);
+			for (int i = 1; i < items.length; i++) {
+				graph.addEdge(id, Integer.parseInt(items[i]));
+			}
+		}
+		return graph;
+	}
+}
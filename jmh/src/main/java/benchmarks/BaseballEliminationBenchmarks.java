@@ -0,0 +1,44 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// BaseballElimination.isEliminated for each team of a generated division,
+// or of the division file given with -p division=<file>
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BaseballEliminationBenchmarks {
+	@Param({ "generated" })
+	public String division;
+
+	@Param({ "30" })
+	public int teams;
+
+	private Workload isEliminated;
+
+	@Setup
+	public void setUp() {
+		isEliminated = Workloads.create("BaseballEliminationWorkloads", "isEliminated", division, teams);
+	}
+
+	@Benchmark
+	public void isEliminated(Blackhole bh) {
+		isEliminated.run(bh);
+	}
+}
@@ -0,0 +1,44 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// BoggleSolver.getAllValidWords on random Hasbro boards, with a generated
+// dictionary or the one given with -p dictionary=<file>
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoggleBenchmarks {
+	@Param({ "generated" })
+	public String dictionary;
+
+	@Param({ "200000" })
+	public int words;
+
+	private Workload getAllValidWords;
+
+	@Setup
+	public void setUp() {
+		getAllValidWords = Workloads.create("BoggleWorkloads", "getAllValidWords", dictionary, words);
+	}
+
+	@Benchmark
+	public void getAllValidWords(Blackhole bh) {
+		getAllValidWords.run(bh);
+	}
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// CircularSuffixArray construction, BurrowsWheeler transform and inverse,
+// and MoveToFront encode and decode on generated text, random bytes and a
+// log-like periodic input
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BurrowsWheelerBenchmarks {
+	private static final String FACTORY = "BurrowsWheelerWorkloads";
+
+	@Param({ "text", "random", "periodic" })
+	public String input;
+
+	@Param({ "1048576" })
+	public int size;
+
+	private Workload suffixArray;
+	private Workload transform;
+	private Workload inverseTransform;
+	private Workload moveToFrontEncode;
+	private Workload moveToFrontDecode;
+
+	@Setup
+	public void setUp() {
+		suffixArray = Workloads.create(FACTORY, "suffixArray", input, size);
+		transform = Workloads.create(FACTORY, "transform", input, size);
+		inverseTransform = Workloads.create(FACTORY, "inverseTransform", input, size);
+		moveToFrontEncode = Workloads.create(FACTORY, "moveToFrontEncode", input, size);
+		moveToFrontDecode = Workloads.create(FACTORY, "moveToFrontDecode", input, size);
+	}
+
+	@Benchmark
+	public void suffixArray(Blackhole bh) {
+		suffixArray.run(bh);
+	}
+
+	@Benchmark
+	public void transform(Blackhole bh) {
+		transform.run(bh);
+	}
+
+	@Benchmark
+	public void inverseTransform(Blackhole bh) {
+		inverseTransform.run(bh);
+	}
+
+	@Benchmark
+	public void moveToFrontEncode(Blackhole bh) {
+		moveToFrontEncode.run(bh);
+	}
+
+	@Benchmark
+	public void moveToFrontDecode(Blackhole bh) {
+		moveToFrontDecode.run(bh);
+	}
+}
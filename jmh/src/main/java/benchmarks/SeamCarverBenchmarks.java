@@ -0,0 +1,83 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// SeamCarver seam finding and removal in both directions, on a generated
+// picture or the image given with -p picture=<file>
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeamCarverBenchmarks {
+	private static final String FACTORY = "SeamCarverWorkloads";
+
+	@State(Scope.Thread)
+	public static class Find {
+		@Param({ "generated" })
+		public String picture;
+
+		@Param({ "1000" })
+		public int width;
+
+		@Param({ "Vertical", "Horizontal" })
+		public String direction;
+
+		Workload workload;
+
+		@Setup
+		public void setUp() {
+			workload = Workloads.create(FACTORY, "find" + direction + "Seam", picture, width);
+		}
+	}
+
+	// Removal changes the picture, so every invocation starts afresh; the
+	// reset is not timed
+	@State(Scope.Thread)
+	public static class Remove {
+		@Param({ "generated" })
+		public String picture;
+
+		@Param({ "1000" })
+		public int width;
+
+		@Param({ "Vertical", "Horizontal" })
+		public String direction;
+
+		Workload workload;
+
+		@Setup
+		public void setUp() {
+			workload = Workloads.create(FACTORY, "remove" + direction + "Seam", picture, width);
+		}
+
+		@Setup(Level.Invocation)
+		public void reset() {
+			workload.reset();
+		}
+	}
+
+	@Benchmark
+	public void findSeam(Find state, Blackhole bh) {
+		state.workload.run(bh);
+	}
+
+	@Benchmark
+	public void removeSeam(Remove state, Blackhole bh) {
+		state.workload.run(bh);
+	}
+}
@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// SAP.length on random synset pairs and WordNet.distance on random noun
+// pairs of a generated WordNet as large as the real one, with breadth-first
+// searches or with the ancestor index
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WordNetBenchmarks {
+	private static final String FACTORY = "WordNetWorkloads";
+
+	@Param({ "bfs", "indexed" })
+	public String mode;
+
+	@Param({ "82115" })
+	public int vertices;
+
+	private Workload sapLength;
+	private Workload distance;
+
+	@Setup
+	public void setUp() {
+		sapLength = Workloads.create(FACTORY, "sapLength", mode, vertices);
+		distance = Workloads.create(FACTORY, "distance", mode, vertices);
+	}
+
+	@Benchmark
+	public void sapLength(Blackhole bh) {
+		sapLength.run(bh);
+	}
+
+	@Benchmark
+	public void distance(Blackhole bh) {
+		distance.run(bh);
+	}
+}
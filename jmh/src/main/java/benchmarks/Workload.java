@@ -0,0 +1,19 @@
+package benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+// One operation of an assignment on a prepared input. The assignments are
+// compiled in the unnamed package, and JMH benchmarks can neither be in it
+// nor refer to its classes, so each assignment has a workload factory in the
+// unnamed package (BurrowsWheelerWorkloads, WordNetWorkloads, ...) that
+// hands out its operations behind this interface. The call sites stay
+// monomorphic, so the JIT inlines through it.
+public interface Workload {
+	// run the operation once, consuming its result
+	void run(Blackhole bh);
+
+	// restore the input of an operation that changes it, such as removing a
+	// seam; called before every run of such operations
+	default void reset() {
+	}
+}
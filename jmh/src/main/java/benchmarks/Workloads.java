@@ -0,0 +1,26 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+final class Workloads {
+	private Workloads() {
+	}
+
+	// The workload returned by the static method
+	//     Workload create(String operation, String input, int size)
+	// of the given factory class in the unnamed package
+	static Workload create(String factory, String operation, String input, int size) {
+		try {
+			Method create = Class.forName(factory).getMethod("create", String.class, String.class, int.class);
+			return (Workload) create.invoke(null, operation, input, size);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("No workload factory " + factory, e);
+		}
+	}
+}
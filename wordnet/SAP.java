@@ -1,9 +1,9 @@
 
-import edu.princeton.cs.algs4.BreadthFirstDirectedPaths;
 import edu.princeton.cs.algs4.Digraph;
 import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
+import java.util.Arrays;
 
 /*
  * To change this license header, choose License Headers in Project Properties.
@@ -16,21 +16,118 @@ import edu.princeton.cs.algs4.StdOut;
  */
 public class SAP {
 
-    private final Digraph graph;
+    private final int vertices; // number of vertices of the digraph
     //private final HashMap<Integer, BreadthFirstDirectedPaths> bfs_map;
 
+    // Ancestor index, null unless the SAP was built with one. The ancestors of
+    // vertex v (v included) are anc_vertex[anc_start[v] .. anc_start[v + 1] - 1]
+    // in increasing order, and anc_dist holds their distances from v
+    private final int[] anc_start;
+    private final int[] anc_vertex;
+    private final int[] anc_dist;
+
+    // Adjacency lists as one array: the edges from vertex v point to
+    // adj[adj_start[v] .. adj_start[v + 1] - 1]
+    private final int[] adj_start;
+    private final int[] adj;
+
+    // Breadth-first search buffers, one set per thread, so that queries
+    // allocate nothing and can still run concurrently
+    private final ThreadLocal<Search> searches;
+
     // constructor takes a digraph (not necessarily a DAG)    
     public SAP(Digraph G) {
+        this(G, false);
+    }
+
+    // constructor takes a digraph (not necessarily a DAG); with indexed set,
+    // the ancestors of every vertex are computed up front so that a query is
+    // a merge of two ancestor lists instead of two breadth-first searches.
+    // This pays off on graphs where vertices have few ancestors, like WordNet,
+    // and costs memory proportional to the total number of ancestors
+    public SAP(Digraph G, boolean indexed) {
         if (G == null) {
             throw new IllegalArgumentException("Input graph cannot be null");
         }
-        graph = new Digraph(G);
         //bfs_map = new HashMap<>();
+
+        // The adjacency arrays are the only copy of the digraph kept
+        final int n = G.V();
+        vertices = n;
+        adj_start = new int[n + 1];
+        adj = new int[G.E()];
+        for (int v = 0; v < n; v++) {
+            int e = adj_start[v];
+            for (int w : G.adj(v)) {
+                adj[e++] = w;
+            }
+            adj_start[v + 1] = e;
+        }
+        searches = new ThreadLocal<Search>() {
+            @Override
+            protected Search initialValue() {
+                return new Search(n);
+            }
+        };
+
+        if (!indexed) {
+            anc_start = null;
+            anc_vertex = null;
+            anc_dist = null;
+            return;
+        }
+
+        // One breadth-first search per vertex, reusing the queue and the
+        // distances, which are reset for the vertices touched only
+        int[] start = new int[n + 1];
+        int[] vertex = new int[Math.max(16, n)];
+        int[] dist = new int[vertex.length];
+        int[] queue = new int[n];
+        int[] dist_to = new int[n];
+        Arrays.fill(dist_to, -1);
+        int size = 0;
+        for (int s = 0; s < n; s++) {
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = s;
+            dist_to[s] = 0;
+            while (head < tail) {
+                int x = queue[head++];
+                for (int e = adj_start[x]; e < adj_start[x + 1]; e++) {
+                    int y = adj[e];
+                    if (dist_to[y] < 0) {
+                        dist_to[y] = dist_to[x] + 1;
+                        queue[tail++] = y;
+                    }
+                }
+            }
+
+            if (size + (long) tail > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Too many ancestors to index");
+            }
+            if (size + tail > vertex.length) {
+                int capacity = (int) Math.min(Integer.MAX_VALUE - 8,
+                        Math.max(size + tail, vertex.length + (long) (vertex.length >> 1)));
+                vertex = Arrays.copyOf(vertex, capacity);
+                dist = Arrays.copyOf(dist, capacity);
+            }
+            System.arraycopy(queue, 0, vertex, size, tail);
+            Arrays.sort(vertex, size, size + tail);
+            for (int i = size; i < size + tail; i++) {
+                dist[i] = dist_to[vertex[i]];
+                dist_to[vertex[i]] = -1;
+            }
+            size += tail;
+            start[s + 1] = size;
+        }
+        anc_start = start;
+        anc_vertex = Arrays.copyOf(vertex, size);
+        anc_dist = Arrays.copyOf(dist, size);
     }
 
     // length of shortest ancestral path between v and w; -1 if no such path
     public int length(int v, int w) {
-        if (v < 0 || v >= graph.V() || w < 0 || w >= graph.V()) {
+        if (v < 0 || v >= vertices || w < 0 || w >= vertices) {
             throw new IllegalArgumentException("Invalid input vertices");
         }
 
@@ -39,46 +136,23 @@ public class SAP {
             return 0;
         }
 
-        BreadthFirstDirectedPaths bfs_v = new BreadthFirstDirectedPaths(graph, v);
-        BreadthFirstDirectedPaths bfs_w = new BreadthFirstDirectedPaths(graph, w);
-        /*
-        if (bfs_map.containsKey(v)) {
-            bfs_v = bfs_map.get(v);
-        } else {
-            bfs_v = new BreadthFirstDirectedPaths(graph, v);
-            bfs_map.put(v, bfs_v);
-        }
-
-        if (bfs_map.containsKey(w)) {
-            bfs_w = bfs_map.get(w);
-        } else {
-            bfs_w = new BreadthFirstDirectedPaths(graph, w);
-            bfs_map.put(w, bfs_w);
-        }
-        */
-        
-        int length = Integer.MAX_VALUE;
-        for (int i = 0; i < graph.V(); i++) {
-            if (bfs_v.hasPathTo(i) && bfs_w.hasPathTo(i)) {
-                int tmp = bfs_v.distTo(i) + bfs_w.distTo(i);
-
-                if (tmp < length) {
-                    length = tmp;
-                }
-            }
-
-        }
-
-        if (length == Integer.MAX_VALUE) {
-            return -1;
+        long best;
+        if (anc_start != null) {
+            best = shortest(anc_vertex, anc_dist, anc_start[v], anc_start[v + 1],
+                    anc_vertex, anc_dist, anc_start[w], anc_start[w + 1]);
         } else {
-            return length;
+            Search s = searches.get();
+            s.begin();
+            s.add(0, v);
+            s.add(1, w);
+            best = search(s);
         }
+        return best < 0 ? -1 : (int) (best >>> 32);
     }
 
     // a common ancestor of v and w that participates in a shortest ancestral path; -1 if no such path
     public int ancestor(int v, int w) {
-        if (v < 0 || v >= graph.V() || w < 0 || w >= graph.V()) {
+        if (v < 0 || v >= vertices || w < 0 || w >= vertices) {
             throw new IllegalArgumentException("Invalid input vertices");
         }
 
@@ -87,115 +161,272 @@ public class SAP {
             return v;
         }
 
-        BreadthFirstDirectedPaths bfs_v = new BreadthFirstDirectedPaths(graph, v);
-        BreadthFirstDirectedPaths bfs_w = new BreadthFirstDirectedPaths(graph, w);
-        /*
-        if (bfs_map.containsKey(v)) {
-            bfs_v = bfs_map.get(v);
-        } else {
-            bfs_v = new BreadthFirstDirectedPaths(graph, v);
-            bfs_map.put(v, bfs_v);
-        }
-
-        if (bfs_map.containsKey(w)) {
-            bfs_w = bfs_map.get(w);
+        long best;
+        if (anc_start != null) {
+            best = shortest(anc_vertex, anc_dist, anc_start[v], anc_start[v + 1],
+                    anc_vertex, anc_dist, anc_start[w], anc_start[w + 1]);
         } else {
-            bfs_w = new BreadthFirstDirectedPaths(graph, w);
-            bfs_map.put(w, bfs_w);
+            Search s = searches.get();
+            s.begin();
+            s.add(0, v);
+            s.add(1, w);
+            best = search(s);
         }
-        */
+        return best < 0 ? -1 : (int) best;
+    }
 
-        int length = Integer.MAX_VALUE;
-        int ancest = -1;
-        for (int i = 0; i < graph.V(); i++) {
-            if (bfs_v.hasPathTo(i) && bfs_w.hasPathTo(i)) {
-                int tmp = bfs_v.distTo(i) + bfs_w.distTo(i);
+    // length of shortest ancestral path between any vertex in v and any vertex in w; -1 if no such path
+    public int length(Iterable<Integer> v, Iterable<Integer> w) {
+        long best = shortest(v, w);
+        return best < 0 ? -1 : (int) (best >>> 32);
+    }
 
-                if (tmp < length) {
-                    length = tmp;
-                    ancest = i;
-                }
-            }
+    // a common ancestor that participates in shortest ancestral path; -1 if no such path
+    public int ancestor(Iterable<Integer> v, Iterable<Integer> w) {
+        long best = shortest(v, w);
+        return best < 0 ? -1 : (int) best;
+    }
 
+    // Shortest ancestral path between the vertex sets v and w, packed as by
+    // search below
+    private long shortest(Iterable<Integer> v, Iterable<Integer> w) {
+        if (v == null || w == null) {
+            throw new IllegalArgumentException("Input cannot be null");
         }
 
-        return ancest;
+        if (anc_start == null) {
+            Search s = searches.get();
+            s.begin();
+            add(s, 0, v);
+            add(s, 1, w);
+            return search(s);
+        }
+        int[][] anc_a = ancestors(vertices(v));
+        int[][] anc_b = ancestors(vertices(w));
+        return shortest(anc_a[0], anc_a[1], 0, anc_a[0].length, anc_b[0], anc_b[1], 0, anc_b[0].length);
     }
 
-    // length of shortest ancestral path between any vertex in v and any vertex in w; -1 if no such path
-    public int length(Iterable<Integer> v, Iterable<Integer> w) {
-        if (v == null || w == null) {
-            throw new IllegalArgumentException("Input cannot be null");
+    // The vertices of an input set, checked
+    private int[] vertices(Iterable<Integer> set) {
+        int n = 0;
+        for (Integer a : set) {
+            check(a);
+            n++;
+        }
+        if (n == 0) {
+            throw new IllegalArgumentException("Input contains no vertices");
         }
 
-        for (Integer a : v) {
-            if (a == null) {
-                throw new IllegalArgumentException("Input contains null item");
-            }
+        int[] vertices = new int[n];
+        int i = 0;
+        for (int a : set) {
+            vertices[i++] = a;
         }
+        return vertices;
+    }
 
-        for (Integer a : w) {
-            if (a == null) {
-                throw new IllegalArgumentException("Input contains null item");
-            }
+    // Add the vertices of an input set to one side of a search, checked
+    private void add(Search s, int side, Iterable<Integer> set) {
+        boolean empty = true;
+        for (Integer a : set) {
+            check(a);
+            s.add(side, a);
+            empty = false;
+        }
+        if (empty) {
+            throw new IllegalArgumentException("Input contains no vertices");
         }
+    }
 
-        BreadthFirstDirectedPaths bfs_v = new BreadthFirstDirectedPaths(graph, v);
-        BreadthFirstDirectedPaths bfs_w = new BreadthFirstDirectedPaths(graph, w);
+    private void check(Integer a) {
+        if (a == null) {
+            throw new IllegalArgumentException("Input contains null item");
+        }
+        if (a < 0 || a >= vertices) {
+            throw new IllegalArgumentException("Invalid input vertices");
+        }
+    }
 
+    // Shortest ancestral path between the sources of the two sides of s,
+    // packed as the length in the high half and the smallest common ancestor
+    // reaching it in the low half, or -1 if there is none. Breadth-first
+    // searches from both sides take turns, a level at a time, the side with
+    // the lower level going next. A vertex reached from one side and not yet
+    // from the other is more than level steps away from every source of an
+    // open side (one whose queue is not empty), so once the lowest open level
+    // reaches the best length found, no common ancestor can do better, and
+    // every one that ties has been reached from both sides. Only the vertices
+    // near the sources are visited.
+    private long search(Search s) {
+        int[] head = s.head;
+        int[] tail = s.tail;
+        int[] level = s.level;
+        int generation = s.generation;
         int length = Integer.MAX_VALUE;
-        for (int i = 0; i < graph.V(); i++) {
-            if (bfs_v.hasPathTo(i) && bfs_w.hasPathTo(i)) {
-                int tmp = bfs_v.distTo(i) + bfs_w.distTo(i);
 
-                if (tmp < length) {
-                    length = tmp;
+        // A source of both sides is its own ancestor
+        for (int i = 0; i < tail[1]; i++) {
+            if (s.stamp[0][s.queue[1][i]] == generation) {
+                length = 0;
+            }
+        }
+
+        while (true) {
+            int side;
+            if (head[0] < tail[0] && (head[1] == tail[1] || level[0] <= level[1])) {
+                side = 0;
+            } else if (head[1] < tail[1]) {
+                side = 1;
+            } else {
+                break;
+            }
+            if (level[side] >= length) {
+                break;
+            }
+
+            int[] dist = s.dist[side];
+            int[] stamp = s.stamp[side];
+            int[] other_dist = s.dist[1 - side];
+            int[] other_stamp = s.stamp[1 - side];
+            int[] q = s.queue[side];
+            int d = level[side] + 1;
+            int end = tail[side];
+            for (int i = head[side]; i < end; i++) {
+                int x = q[i];
+                for (int e = adj_start[x]; e < adj_start[x + 1]; e++) {
+                    int y = adj[e];
+                    if (stamp[y] != generation) {
+                        stamp[y] = generation;
+                        dist[y] = d;
+                        q[tail[side]++] = y;
+                        if (other_stamp[y] == generation && d + other_dist[y] < length) {
+                            length = d + other_dist[y];
+                        }
+                    }
                 }
             }
+            head[side] = end;
+            level[side] = d;
         }
 
         if (length == Integer.MAX_VALUE) {
             return -1;
-        } else {
-            return length;
         }
+        int ancest = Integer.MAX_VALUE;
+        for (int i = 0; i < tail[0]; i++) {
+            int x = s.queue[0][i];
+            if (s.stamp[1][x] == generation && s.dist[0][x] + s.dist[1][x] == length && x < ancest) {
+                ancest = x;
+            }
+        }
+        return (long) length << 32 | ancest;
     }
 
-    // a common ancestor that participates in shortest ancestral path; -1 if no such path
-    public int ancestor(Iterable<Integer> v, Iterable<Integer> w) {
-        if (v == null || w == null) {
-            throw new IllegalArgumentException("Input cannot be null");
+    // Buffers of a two-sided breadth-first search, reused from query to
+    // query. A vertex has been reached from a side only if its stamp for
+    // that side is the current generation, so starting a query takes a new
+    // generation instead of clearing arrays of V entries.
+    private static class Search {
+        final int[][] dist;
+        final int[][] stamp;
+        final int[][] queue;
+        final int[] head = new int[2];
+        final int[] tail = new int[2];
+        final int[] level = new int[2];
+        int generation;
+
+        Search(int n) {
+            dist = new int[2][n];
+            stamp = new int[2][n];
+            queue = new int[2][n];
         }
 
-        for (Integer a : v) {
-            if (a == null) {
-                throw new IllegalArgumentException("Input contains null item");
+        // start a new query with no sources
+        void begin() {
+            if (generation == Integer.MAX_VALUE) {
+                // Stamps could collide with a reused generation
+                Arrays.fill(stamp[0], 0);
+                Arrays.fill(stamp[1], 0);
+                generation = 0;
+            }
+            generation++;
+            for (int side = 0; side < 2; side++) {
+                head[side] = 0;
+                tail[side] = 0;
+                level[side] = 0;
             }
         }
 
-        for (Integer a : w) {
-            if (a == null) {
-                throw new IllegalArgumentException("Input contains null item");
+        // add source v to a side
+        void add(int side, int v) {
+            if (stamp[side][v] != generation) {
+                stamp[side][v] = generation;
+                dist[side][v] = 0;
+                queue[side][tail[side]++] = v;
             }
         }
+    }
+
+    // Ancestors of the vertices in set, each at its least distance
+    // from any of them, as arrays of increasing ancestors and their distances
+    private int[][] ancestors(int[] set) {
+        int total = 0;
+        for (int v : set) {
+            total += anc_start[v + 1] - anc_start[v];
+        }
 
-        BreadthFirstDirectedPaths bfs_v = new BreadthFirstDirectedPaths(graph, v);
-        BreadthFirstDirectedPaths bfs_w = new BreadthFirstDirectedPaths(graph, w);
+        // Sort (ancestor, distance) pairs as longs, so that the first copy of
+        // each ancestor has its least distance
+        long[] pairs = new long[total];
+        int n = 0;
+        for (int v : set) {
+            for (int i = anc_start[v]; i < anc_start[v + 1]; i++) {
+                pairs[n++] = (long) anc_vertex[i] << 32 | anc_dist[i];
+            }
+        }
+        Arrays.sort(pairs);
+
+        int[] vertex = new int[total];
+        int[] dist = new int[total];
+        int size = 0;
+        for (int i = 0; i < total; i++) {
+            int x = (int) (pairs[i] >>> 32);
+            if (size == 0 || vertex[size - 1] != x) {
+                vertex[size] = x;
+                dist[size++] = (int) pairs[i];
+            }
+        }
+        return new int[][] { Arrays.copyOf(vertex, size), Arrays.copyOf(dist, size) };
+    }
 
+    // Merge two increasing ancestor lists, returning the shortest ancestral
+    // path packed as by search, or -1 if the lists have no ancestor in common
+    private static long shortest(int[] a, int[] da, int a_from, int a_to,
+            int[] b, int[] db, int b_from, int b_to) {
         int length = Integer.MAX_VALUE;
         int ancest = -1;
-        for (int i = 0; i < graph.V(); i++) {
-            if (bfs_v.hasPathTo(i) && bfs_w.hasPathTo(i)) {
-                int tmp = bfs_v.distTo(i) + bfs_w.distTo(i);
-
+        int i = a_from;
+        int j = b_from;
+        while (i < a_to && j < b_to) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                int tmp = da[i] + db[j];
                 if (tmp < length) {
                     length = tmp;
-                    ancest = i;
+                    ancest = a[i];
                 }
+                i++;
+                j++;
             }
         }
-        
-        return ancest;
+
+        if (ancest == -1) {
+            return -1;
+        }
+        return (long) length << 32 | ancest;
     }
 
     // do unit testing of this class
@@ -12,6 +12,7 @@ import java.util.Scanner;
 import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Collections;
 
 /**
  *
@@ -21,18 +22,23 @@ public class WordNet {
 
     private final Digraph wordnet;
     private final HashMap<Integer, ArrayList<String>> synsets_map; // map from synset id to synonym set
-    private final HashSet<String> nouns_set; // set of all nouns
     private final SAP sap; // An SAP object for this wordnet graph
-    private final HashMap<String, HashSet<Integer>> nouns_map; // a cache that map from a noun to set of synsets contain it
+    private final HashMap<String, HashSet<Integer>> nouns_map; // map from a noun to set of synsets contain it
 
     // constructor takes the name of the two input files
     public WordNet(String synsets, String hypernyms) {
+        this(synsets, hypernyms, false);
+    }
+
+    // constructor takes the name of the two input files; with indexed set,
+    // the ancestors of every synset are computed up front, which makes
+    // distance and sap much faster at the cost of memory (see SAP)
+    public WordNet(String synsets, String hypernyms, boolean indexed) {
         if (synsets == null || hypernyms == null) {
             throw new IllegalArgumentException("Arguments cannot be null");
         }
 
         synsets_map = new HashMap<>();
-        nouns_set = new HashSet<>();
         nouns_map = new HashMap<>();
 
         int vertices_num = read_synsets(synsets);
@@ -52,14 +58,19 @@ public class WordNet {
             throw new IllegalArgumentException("Input wordnet is not a rooted DAG");
         }
 
-        // Gather the set of nouns
+        // Map every noun to the synsets that contain it
         for (int i = 0; i < synsets_map.size(); i++) {
             for (String noun : synsets_map.get(i)) {
-                nouns_set.add(noun);
+                HashSet<Integer> ids = nouns_map.get(noun);
+                if (ids == null) {
+                    ids = new HashSet<>();
+                    nouns_map.put(noun, ids);
+                }
+                ids.add(i);
             }
         }
 
-        sap = new SAP(wordnet);
+        sap = new SAP(wordnet, indexed);
     }
 
     private int read_synsets(String synsets) {
@@ -206,7 +217,8 @@ public class WordNet {
 
     // returns all WordNet nouns
     public Iterable<String> nouns() {
-        return nouns_set;
+        // a read-only view, so callers cannot remove nouns through it
+        return Collections.unmodifiableSet(nouns_map.keySet());
     }
 
     // is the word a WordNet noun?
@@ -215,7 +227,7 @@ public class WordNet {
             throw new IllegalArgumentException("Arguments cannot be null");
         }
 
-        return nouns_set.contains(word);
+        return nouns_map.containsKey(word);
     }
     
     // A class for encapsulating sets of synsets containing nounA and nounB
@@ -229,51 +241,15 @@ public class WordNet {
     }
 
     private EncapData cache_helper(String nounA, String nounB) {
-        // Set of synset ids that contain nounA (nounB)
-        // Read from the cache if possible
-        HashSet<Integer> a_set, b_set;
-        boolean compute_a = false;
-        boolean compute_b = false;
-        if (nouns_map.containsKey(nounA)) {
-            a_set = nouns_map.get(nounA);
-        } else {
-            a_set = new HashSet<>();
-            compute_a = true;
-        }
-        
-        if (nouns_map.containsKey(nounB)) {
-            b_set = nouns_map.get(nounB);
-        } else {
-            b_set = new HashSet<>();
-            compute_b = true;
-        }
-        
-        //HashSet<Integer> a_set = new HashSet<>();
-        //HashSet<Integer> b_set = new HashSet<>();
-        for (Integer id : synsets_map.keySet()) {
-            if (compute_a == true && synsets_map.get(id).contains(nounA)) {
-                a_set.add(id);
-            }
-            if (compute_b == true && synsets_map.get(id).contains(nounB)) {
-                b_set.add(id);
-            }
-        }
-        
-        // Cache the new computed results
-        if (compute_a == true) {
-            nouns_map.put(nounA, a_set);
-        }
-        if (compute_b == true) {
-            nouns_map.put(nounB, b_set);
-        }
-        
-        return new EncapData(a_set, b_set);
+        // Set of synset ids that contain nounA (nounB), all cached by the
+        // constructor, so queries only read the map
+        return new EncapData(nouns_map.get(nounA), nouns_map.get(nounB));
     }
     
     
     // distance between nounA and nounB (defined below)
     public int distance(String nounA, String nounB) {
-        if (nounA == null || nounB == null || !nouns_set.contains(nounA) || !nouns_set.contains(nounB)) {
+        if (nounA == null || nounB == null || !nouns_map.containsKey(nounA) || !nouns_map.containsKey(nounB)) {
             throw new IllegalArgumentException("Invalid input nouns");
         }
         
@@ -289,7 +265,7 @@ public class WordNet {
     // a synset (second field of synsets.txt) that is the common ancestor of nounA and nounB
     // in a shortest ancestral path (defined below)
     public String sap(String nounA, String nounB) {
-        if (nounA == null || nounB == null || !nouns_set.contains(nounA) || !nouns_set.contains(nounB)) {
+        if (nounA == null || nounB == null || !nouns_map.containsKey(nounA) || !nouns_map.containsKey(nounB)) {
             throw new IllegalArgumentException("Invalid inut nouns");
         }
 